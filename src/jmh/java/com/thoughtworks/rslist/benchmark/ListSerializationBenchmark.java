@@ -0,0 +1,86 @@
+package com.thoughtworks.rslist.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thoughtworks.rslist.domain.RsEvent;
+import com.thoughtworks.rslist.service.Leaderboard;
+import com.thoughtworks.rslist.service.RsListSnapshot;
+import com.thoughtworks.rslist.service.RsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/** Producing the /rs/list body: mapping plus Jackson on every call against the pre-encoded snapshot. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListSerializationBenchmark {
+  @Param({"100", "1000", "10000"})
+  int size;
+
+  ObjectMapper objectMapper;
+  Leaderboard leaderboard;
+  RsService rsService;
+  RsListSnapshot rsListSnapshot;
+  int next;
+
+  @Setup
+  public void setUp() {
+    objectMapper = new ObjectMapper();
+    leaderboard = new Leaderboard();
+    Random random = new Random(42);
+    List<Leaderboard.Entry> entries = new ArrayList<>(size);
+    for (int id = 1; id <= size; id++) {
+      entries.add(Leaderboard.Entry.builder().id(id).eventName("event " + id).keyword("keyword")
+          .voteNum(random.nextInt(1000)).build());
+    }
+    leaderboard.reload(entries, Collections.emptyMap());
+    rsService = new RsService(null, null, null, null, leaderboard, leaderboard, null, null, null, null, null, null, null);
+    rsListSnapshot = new RsListSnapshot(rsService, leaderboard, leaderboard, objectMapper, true);
+  }
+
+  @Benchmark
+  public List<RsEvent> mapList() {
+    return rsService.getRsEventList();
+  }
+
+  @Benchmark
+  public byte[] mapAndSerializeList() throws JsonProcessingException {
+    return objectMapper.writeValueAsBytes(rsService.getRsEventList());
+  }
+
+  @Benchmark
+  public byte[] snapshotList() {
+    return rsListSnapshot.list();
+  }
+
+  @Benchmark
+  public byte[] snapshotFirstTen() {
+    return rsListSnapshot.range(1, 10);
+  }
+
+  @Benchmark
+  public byte[] snapshotListAfterVote() {
+    // worst case: every read follows a change and pays for the rebuild, gzip included
+    next = (next + 7919) % size;
+    leaderboard.addVotes(next + 1, 1);
+    return rsListSnapshot.list();
+  }
+}
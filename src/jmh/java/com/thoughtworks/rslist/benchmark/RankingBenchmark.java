@@ -0,0 +1,81 @@
+package com.thoughtworks.rslist.benchmark;
+
+import com.thoughtworks.rslist.service.Leaderboard;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/** Ordering the rs list with the leaderboard: reading all of it or a window, and moving one event on a vote. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RankingBenchmark {
+  @Param({"100", "1000", "10000"})
+  int size;
+
+  // share of the events sitting on a purchased ranking
+  @Param({"0", "0.1", "0.5"})
+  double purchased;
+
+  Leaderboard leaderboard;
+  int next;
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(42);
+    List<Integer> rankings = new ArrayList<>();
+    for (int ranking = 1; ranking <= size; ranking++) {
+      rankings.add(ranking);
+    }
+    Collections.shuffle(rankings, random);
+
+    List<Leaderboard.Entry> entries = new ArrayList<>(size);
+    Map<Integer, Integer> slots = new HashMap<>();
+    for (int id = 1; id <= size; id++) {
+      int voteNum = random.nextInt(1000);
+      int ranking = id <= size * purchased ? rankings.get(id - 1) : 0;
+      entries.add(Leaderboard.Entry.builder().id(id).eventName("event " + id).keyword("keyword").voteNum(voteNum).build());
+      if (ranking > 0) {
+        slots.put(ranking, id);
+      }
+    }
+    leaderboard = new Leaderboard();
+    leaderboard.reload(entries, slots);
+  }
+
+  @Benchmark
+  public List<Leaderboard.Entry> leaderboardAll() {
+    return leaderboard.all();
+  }
+
+  @Benchmark
+  public List<Leaderboard.Entry> leaderboardFirstTen() {
+    return leaderboard.window(1, 10);
+  }
+
+  @Benchmark
+  public void leaderboardVote() {
+    // one vote moves one event; the tree is updated in place instead of re-sorted
+    next = (next + 7919) % size;
+    leaderboard.addVotes(next + 1, 1);
+  }
+}
@@ -0,0 +1,128 @@
+package com.thoughtworks.rslist.benchmark;
+
+import com.thoughtworks.rslist.RsListApplication;
+import com.thoughtworks.rslist.domain.Trade;
+import com.thoughtworks.rslist.domain.Vote;
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.dto.UserDto;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.UserRepository;
+import com.thoughtworks.rslist.service.RsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * RsService.vote and RsService.buy through the whole Spring and JPA stack against an embedded H2
+ * database, from several threads at once. Each thread votes as its own user on random events and
+ * keeps outbidding itself on its own ranking, so the numbers show the cost of the write path
+ * rather than of failed bids.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class VoteBuyBenchmark {
+  static final int USERS = 64;
+  static final int EVENTS = 100;
+
+  // transactional: the default path, write-behind: buffered vote counts, journal: journaled votes
+  @Param({"transactional", "write-behind", "journal"})
+  String voteMode;
+
+  ConfigurableApplicationContext context;
+  RsService rsService;
+  List<Integer> userIds = new ArrayList<>();
+  List<Integer> eventIds = new ArrayList<>();
+  AtomicInteger threads = new AtomicInteger();
+
+  @Setup
+  public void setUp() throws IOException {
+    context =
+        new SpringApplicationBuilder(RsListApplication.class)
+            .web(WebApplicationType.NONE)
+            .run(
+                "--spring.datasource.url=jdbc:h2:mem:bench;MODE=MySQL;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--logging.level.root=WARN",
+                "--rslist.vote.write-behind.enabled=" + voteMode.equals("write-behind"),
+                "--rslist.vote.journal.enabled=" + voteMode.equals("journal"),
+                "--rslist.vote.journal.dir=" + Files.createTempDirectory("vote-journal"));
+    rsService = context.getBean(RsService.class);
+    UserRepository userRepository = context.getBean(UserRepository.class);
+    RsEventRepository rsEventRepository = context.getBean(RsEventRepository.class);
+    for (int i = 0; i < USERS; i++) {
+      UserDto user =
+          userRepository.save(
+              UserDto.builder().userName("user" + i).age(20).gender("female").email("a@b.com")
+                  .phone("18888888888").voteNum(Integer.MAX_VALUE / 2).build());
+      userIds.add(user.getId());
+    }
+    for (int i = 0; i < EVENTS; i++) {
+      RsEventDto event =
+          rsEventRepository.save(
+              RsEventDto.builder().eventName("event " + i).keyword("keyword").user(userRepository.getOne(userIds.get(i % USERS))).build());
+      eventIds.add(event.getId());
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    context.close();
+  }
+
+  @State(Scope.Thread)
+  public static class Voter {
+    int userId;
+    int rsEventId;
+    int ranking;
+    double amount;
+
+    @Setup
+    public void setUp(VoteBuyBenchmark benchmark) {
+      int index = benchmark.threads.getAndIncrement();
+      userId = benchmark.userIds.get(index % USERS);
+      rsEventId = benchmark.eventIds.get(index % EVENTS);
+      ranking = index + 1;
+    }
+  }
+
+  @Benchmark
+  public void vote(Voter voter) {
+    int rsEventId = eventIds.get(ThreadLocalRandom.current().nextInt(EVENTS));
+    rsService.vote(Vote.builder().userId(voter.userId).rsEventId(rsEventId).voteNum(1).build(), rsEventId);
+  }
+
+  @Benchmark
+  public void buy(Voter voter) {
+    voter.amount += 1;
+    rsService.buy(Trade.builder().ranking(voter.ranking).amount(voter.amount).rsEventId(voter.rsEventId).build(),
+        voter.rsEventId);
+  }
+}
@@ -0,0 +1,69 @@
+package com.thoughtworks.rslist.loadtest;
+
+import com.thoughtworks.rslist.service.Leaderboard;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The invariants the vote and buy paths must keep under any interleaving: an event's voteNum is
+ * the sum of its votes, no budget goes below zero, a ranking has at most one trade, and the
+ * in-memory leaderboard serves the counts the database holds.
+ */
+class ConsistencyCheck {
+  final EntityManagerFactory entityManagerFactory;
+  final Leaderboard leaderboard;
+
+  ConsistencyCheck(EntityManagerFactory entityManagerFactory, Leaderboard leaderboard) {
+    this.entityManagerFactory = entityManagerFactory;
+    this.leaderboard = leaderboard;
+  }
+
+  /** One line per broken invariant, empty when all of them hold. */
+  List<String> violations() {
+    List<String> violations = new ArrayList<>();
+    EntityManager entityManager = entityManagerFactory.createEntityManager();
+    try {
+      List<Object[]> events =
+          entityManager
+              .createQuery(
+                  "select e.id, e.voteNum, (select coalesce(sum(v.num), 0) from VoteDto v where v.rsEvent = e) "
+                      + "from RsEventDto e",
+                  Object[].class)
+              .getResultList();
+      for (Object[] event : events) {
+        int id = (Integer) event[0];
+        int voteNum = (Integer) event[1];
+        long votes = ((Number) event[2]).longValue();
+        if (voteNum != votes) {
+          violations.add("event " + id + " has voteNum " + voteNum + " but its votes sum to " + votes);
+        }
+        Optional<Leaderboard.Entry> entry = leaderboard.find(id);
+        if (!entry.isPresent()) {
+          violations.add("event " + id + " is missing from the leaderboard");
+        } else if (entry.get().getVoteNum() != voteNum) {
+          violations.add("event " + id + " has voteNum " + voteNum + " but the leaderboard shows "
+              + entry.get().getVoteNum());
+        }
+      }
+      if (leaderboard.size() != events.size()) {
+        violations.add("the leaderboard holds " + leaderboard.size() + " events, the database " + events.size());
+      }
+      entityManager
+          .createQuery("select u.id, u.voteNum from UserDto u where u.voteNum < 0", Object[].class)
+          .getResultList()
+          .forEach(user -> violations.add("user " + user[0] + " has a negative budget of " + user[1]));
+      entityManager
+          .createQuery(
+              "select t.ranking, count(t) from TradeDto t group by t.ranking having count(t) > 1", Object[].class)
+          .getResultList()
+          .forEach(trade -> violations.add("ranking " + trade[0] + " was sold " + trade[1] + " times"));
+    } finally {
+      entityManager.close();
+    }
+    return violations;
+  }
+}
@@ -0,0 +1,298 @@
+package com.thoughtworks.rslist.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thoughtworks.rslist.RsListApplication;
+import com.thoughtworks.rslist.domain.Trade;
+import com.thoughtworks.rslist.domain.Vote;
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.dto.UserDto;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.UserRepository;
+import com.thoughtworks.rslist.service.Leaderboard;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.CommandLinePropertySource;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.MutablePropertySources;
+
+import javax.persistence.EntityManagerFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Boots the application on an in-memory H2 database, drives a mix of /rs/list reads, votes and
+ * buys at it from concurrent clients, prints throughput and latency percentiles per operation and
+ * then checks that the tables are still consistent. Exits with 1 when they are not.
+ *
+ * <p>{@code ./gradlew loadTest -PloadTestArgs="--loadtest.threads=32 --rslist.vote.journal.enabled=true"}:
+ * the {@code loadtest.*} arguments configure the run, and all of them reach the application, so
+ * the same mix can be compared across vote modes.
+ */
+public class LoadTest {
+  enum Operation { LIST, VOTE, BUY }
+
+  final Environment environment;
+  final String baseUrl;
+  final ObjectMapper objectMapper;
+  final ConsistencyCheck consistencyCheck;
+  final UserRepository userRepository;
+  final RsEventRepository rsEventRepository;
+  final int threads;
+  final int warmupSeconds;
+  final int durationSeconds;
+  final int users;
+  final int events;
+  final int budget;
+  final int rankings;
+  final int maxAmount;
+  final int[] weights;
+  final long settleTimeout;
+
+  List<Integer> userIds;
+  List<Integer> eventIds;
+
+  LoadTest(ConfigurableApplicationContext context) {
+    environment = context.getEnvironment();
+    baseUrl = "http://localhost:" + environment.getProperty("local.server.port");
+    objectMapper = context.getBean(ObjectMapper.class);
+    consistencyCheck =
+        new ConsistencyCheck(context.getBean(EntityManagerFactory.class), context.getBean(Leaderboard.class));
+    userRepository = context.getBean(UserRepository.class);
+    rsEventRepository = context.getBean(RsEventRepository.class);
+    threads = setting("threads", 16);
+    warmupSeconds = setting("warmup", 5);
+    durationSeconds = setting("duration", 30);
+    users = setting("users", 100);
+    events = setting("events", 50);
+    budget = setting("budget", 1000);
+    rankings = setting("rankings", 10);
+    maxAmount = setting("max-amount", 10000);
+    weights = new int[] {setting("mix.list", 80), setting("mix.vote", 15), setting("mix.buy", 5)};
+    settleTimeout = setting("settle-timeout", 10000);
+  }
+
+  public static void main(String[] args) throws Exception {
+    SpringApplication application = new SpringApplication(RsListApplication.class);
+    Map<String, Object> defaults = new HashMap<>();
+    defaults.put("spring.datasource.url", "jdbc:h2:mem:loadtest;MODE=MySQL;DB_CLOSE_DELAY=-1");
+    defaults.put("spring.datasource.driver-class-name", "org.h2.Driver");
+    defaults.put("spring.datasource.username", "sa");
+    defaults.put("spring.datasource.password", "");
+    defaults.put("server.port", "0");
+    // above application.yml, below the command line
+    application.addInitializers(context -> {
+      MutablePropertySources sources = context.getEnvironment().getPropertySources();
+      MapPropertySource loadTest = new MapPropertySource("loadTest", defaults);
+      if (sources.contains(CommandLinePropertySource.COMMAND_LINE_PROPERTY_SOURCE_NAME)) {
+        sources.addAfter(CommandLinePropertySource.COMMAND_LINE_PROPERTY_SOURCE_NAME, loadTest);
+      } else {
+        sources.addFirst(loadTest);
+      }
+    });
+    boolean consistent;
+    try (ConfigurableApplicationContext context = application.run(args)) {
+      consistent = new LoadTest(context).run();
+    }
+    System.exit(consistent ? 0 : 1);
+  }
+
+  boolean run() throws Exception {
+    seed();
+    System.out.printf("%d threads, %ds warmup, %ds measured, list/vote/buy = %d/%d/%d, %d users, %d events%n",
+        threads, warmupSeconds, durationSeconds, weights[0], weights[1], weights[2], users, events);
+
+    long measureFrom = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSeconds);
+    long end = measureFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    List<Future<Stats[]>> results = new ArrayList<>();
+    for (int i = 0; i < threads; i++) {
+      results.add(executor.submit(() -> drive(measureFrom, end)));
+    }
+    Stats[] total = Stats.forEachOperation();
+    for (Future<Stats[]> result : results) {
+      Stats[] stats = result.get();
+      for (Operation operation : Operation.values()) {
+        total[operation.ordinal()].add(stats[operation.ordinal()]);
+      }
+    }
+    executor.shutdown();
+    report(total);
+    return verify();
+  }
+
+  private void seed() {
+    userIds =
+        userRepository
+            .saveAll(
+                IntStream.range(0, users)
+                    .mapToObj(i -> UserDto.builder().userName("load" + i).gender("female").age(20)
+                        .email("load" + i + "@rs.list").phone("1" + String.format("%010d", i)).voteNum(budget).build())
+                    .collect(Collectors.toList()))
+            .stream()
+            .map(UserDto::getId)
+            .collect(Collectors.toList());
+    Random random = new Random(events);
+    eventIds =
+        rsEventRepository
+            .saveAll(
+                IntStream.range(0, events)
+                    .mapToObj(i -> RsEventDto.builder().eventName("event " + i).keyword("load")
+                        .user(userRepository.getOne(userIds.get(random.nextInt(users)))).build())
+                    .collect(Collectors.toList()))
+            .stream()
+            .map(RsEventDto::getId)
+            .collect(Collectors.toList());
+  }
+
+  private Stats[] drive(long measureFrom, long end) {
+    Stats[] stats = Stats.forEachOperation();
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    for (long start = System.nanoTime(); start < end; start = System.nanoTime()) {
+      Operation operation = pick(random.nextInt(weights[0] + weights[1] + weights[2]));
+      int status = call(operation, random);
+      if (start >= measureFrom) {
+        stats[operation.ordinal()].record(status, System.nanoTime() - start);
+      }
+    }
+    return stats;
+  }
+
+  private Operation pick(int draw) {
+    if (draw < weights[0]) {
+      return Operation.LIST;
+    }
+    return draw < weights[0] + weights[1] ? Operation.VOTE : Operation.BUY;
+  }
+
+  private int call(Operation operation, ThreadLocalRandom random) {
+    int eventId = eventIds.get(random.nextInt(eventIds.size()));
+    try {
+      switch (operation) {
+        case LIST:
+          return request("GET", "/rs/list", null);
+        case VOTE:
+          Vote vote = Vote.builder().userId(userIds.get(random.nextInt(userIds.size()))).voteNum(1 + random.nextInt(3))
+              .build();
+          return request("POST", "/rs/vote/" + eventId, objectMapper.writeValueAsBytes(vote));
+        default:
+          Trade trade = Trade.builder().ranking(1 + random.nextInt(rankings)).amount(1 + random.nextInt(maxAmount))
+              .build();
+          return request("POST", "/rs/buy/" + eventId, objectMapper.writeValueAsBytes(trade));
+      }
+    } catch (IOException e) {
+      return -1;
+    }
+  }
+
+  private int request(String method, String path, byte[] body) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+    connection.setRequestMethod(method);
+    if (body != null) {
+      connection.setDoOutput(true);
+      connection.setRequestProperty("Content-Type", "application/json");
+      try (OutputStream out = connection.getOutputStream()) {
+        out.write(body);
+      }
+    }
+    int status = connection.getResponseCode();
+    // read the body to the end, so the connection goes back to the keep-alive pool
+    try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+      if (in != null) {
+        byte[] buffer = new byte[8192];
+        while (in.read(buffer) != -1) {
+          // discard
+        }
+      }
+    }
+    return status;
+  }
+
+  private void report(Stats[] stats) {
+    System.out.printf("%-6s %9s %9s %9s %9s %10s %9s %9s %9s %9s%n",
+        "op", "requests", "2xx", "4xx", "5xx/io", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+    for (Operation operation : Operation.values()) {
+      Stats s = stats[operation.ordinal()];
+      Histogram h = s.latency;
+      System.out.printf("%-6s %9d %9d %9d %9d %10.1f %9.2f %9.2f %9.2f %9.2f%n",
+          operation.name().toLowerCase(), h.getTotalCount(), s.succeeded, s.rejected, s.failed,
+          (double) h.getTotalCount() / durationSeconds, millis(h.getValueAtPercentile(50)),
+          millis(h.getValueAtPercentile(99)), millis(h.getValueAtPercentile(99.9)), millis(h.getMaxValue()));
+    }
+  }
+
+  // votes may still sit in the write-behind buffer or the journal, so wait for them to land
+  private boolean verify() throws InterruptedException {
+    long deadline = System.currentTimeMillis() + settleTimeout;
+    List<String> violations = consistencyCheck.violations();
+    while (!violations.isEmpty() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(200);
+      violations = consistencyCheck.violations();
+    }
+    if (violations.isEmpty()) {
+      System.out.println("consistent: vote sums match, no budget is negative, no ranking is sold twice");
+      return true;
+    }
+    System.out.println(violations.size() + " invariant violations:");
+    violations.forEach(violation -> System.out.println("  " + violation));
+    return false;
+  }
+
+  private int setting(String name, int defaultValue) {
+    return environment.getProperty("loadtest." + name, Integer.class, defaultValue);
+  }
+
+  private static double millis(long nanos) {
+    return nanos / 1e6;
+  }
+
+  static final class Stats {
+    // auto-resizing, three significant digits
+    final Histogram latency = new Histogram(3);
+    long succeeded;
+    long rejected;
+    long failed;
+
+    static Stats[] forEachOperation() {
+      Stats[] stats = new Stats[Operation.values().length];
+      for (int i = 0; i < stats.length; i++) {
+        stats[i] = new Stats();
+      }
+      return stats;
+    }
+
+    void record(int status, long nanos) {
+      latency.recordValue(nanos);
+      if (status >= 200 && status < 300) {
+        succeeded++;
+      } else if (status >= 400 && status < 500) {
+        rejected++;
+      } else {
+        failed++;
+      }
+    }
+
+    void add(Stats other) {
+      latency.add(other.latency);
+      succeeded += other.succeeded;
+      rejected += other.rejected;
+      failed += other.failed;
+    }
+  }
+}
@@ -0,0 +1,41 @@
+package com.thoughtworks.rslist;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * The reactive profile: WebFlux on Netty instead of Spring MVC on Tomcat, and an R2DBC pool for
+ * the vote and buy writes next to the JDBC pool that JPA keeps for everything else.
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveConfiguration {
+
+  // Tomcat is on the classpath for the servlet stack and would otherwise be picked for WebFlux too
+  @Bean
+  public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+    return new NettyReactiveWebServerFactory();
+  }
+
+  @Bean(destroyMethod = "dispose")
+  public ConnectionPool connectionFactory(
+      @Value("${rslist.reactive.r2dbc.url}") String url,
+      @Value("${spring.datasource.username}") String username,
+      @Value("${spring.datasource.password}") String password,
+      @Value("${rslist.reactive.r2dbc.pool-size:20}") int poolSize) {
+    ConnectionFactoryOptions options =
+        ConnectionFactoryOptions.parse(url).mutate()
+            .option(ConnectionFactoryOptions.USER, username)
+            .option(ConnectionFactoryOptions.PASSWORD, password)
+            .build();
+    return new ConnectionPool(
+        ConnectionPoolConfiguration.builder(ConnectionFactories.get(options)).initialSize(1).maxSize(poolSize).build());
+  }
+}
@@ -0,0 +1,59 @@
+package com.thoughtworks.rslist;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Read replicas of {@code spring.datasource}, listed in {@code rslist.datasource.replicas}. The
+ * read-only transactions of GET requests to the rs and vote endpoints go to them in turn; votes,
+ * buys and everything the application does on its own stay on the primary.
+ */
+@Configuration
+@ConditionalOnExpression("!'${rslist.datasource.replicas:}'.trim().isEmpty()")
+public class ReadReplicaConfiguration {
+
+  // the only DataSource bean, in place of the pool Spring Boot would have made
+  @Bean
+  public ReplicaRoutingDataSource dataSource(
+      DataSourceProperties properties,
+      Environment environment,
+      @Value("${rslist.datasource.replicas}") String replicas,
+      @Value("${rslist.datasource.replica-pool-size:10}") int poolSize) {
+    HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+    List<HikariDataSource> pools = Arrays.stream(replicas.split(","))
+        .map(String::trim)
+        .filter(url -> !url.isEmpty())
+        .map(url -> {
+          HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).url(url).build();
+          pool.setMaximumPoolSize(poolSize);
+          pool.setReadOnly(true);
+          return pool;
+        })
+        .collect(Collectors.toList());
+    return new ReplicaRoutingDataSource(primary, pools);
+  }
+
+  @Bean
+  @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+  public FilterRegistrationBean<ReplicaStickinessFilter> replicaStickinessFilter(
+      @Value("${rslist.datasource.sticky-window:5000}") long stickyWindow) {
+    FilterRegistrationBean<ReplicaStickinessFilter> registration =
+        new FilterRegistrationBean<>(new ReplicaStickinessFilter(stickyWindow));
+    registration.addUrlPatterns("/rs/*", "/voteRecord", "/voteRecords");
+    return registration;
+  }
+}
@@ -0,0 +1,73 @@
+package com.thoughtworks.rslist;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out connections of the primary, or of the replicas in turn for a read-only transaction
+ * on a thread that {@link #allowReplicaReads() allows} it. Only the request threads of the read
+ * endpoints do, so loading the leaderboard, the pollers and every write stay on the primary.
+ *
+ * <p>A transaction is only known to be read-only once it has begun, so connections are handed
+ * out lazily and the pool is picked at the first statement.
+ */
+public class ReplicaRoutingDataSource extends LazyConnectionDataSourceProxy implements Closeable {
+  private static final String PRIMARY = "primary";
+  private static final ThreadLocal<Boolean> REPLICA_READS = new ThreadLocal<>();
+
+  private final HikariDataSource primary;
+  private final List<HikariDataSource> replicas;
+  private final AtomicInteger next = new AtomicInteger();
+
+  public ReplicaRoutingDataSource(HikariDataSource primary, List<HikariDataSource> replicas) {
+    this.primary = primary;
+    this.replicas = replicas;
+    Map<Object, Object> targets = new HashMap<>();
+    targets.put(PRIMARY, primary);
+    for (int i = 0; i < replicas.size(); i++) {
+      targets.put(i, replicas.get(i));
+    }
+    AbstractRoutingDataSource routing = new AbstractRoutingDataSource() {
+      @Override
+      protected Object determineCurrentLookupKey() {
+        return lookupKey();
+      }
+    };
+    routing.setTargetDataSources(targets);
+    routing.setDefaultTargetDataSource(primary);
+    routing.afterPropertiesSet();
+    setTargetDataSource(routing);
+    afterPropertiesSet();
+  }
+
+  public static void allowReplicaReads() {
+    REPLICA_READS.set(Boolean.TRUE);
+  }
+
+  public static void reset() {
+    REPLICA_READS.remove();
+  }
+
+  private Object lookupKey() {
+    if (replicas.isEmpty()
+        || !Boolean.TRUE.equals(REPLICA_READS.get())
+        || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+      return PRIMARY;
+    }
+    return Math.floorMod(next.getAndIncrement(), replicas.size());
+  }
+
+  @Override
+  public void close() {
+    replicas.forEach(HikariDataSource::close);
+    primary.close();
+  }
+}
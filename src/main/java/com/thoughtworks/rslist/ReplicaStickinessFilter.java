@@ -0,0 +1,68 @@
+package com.thoughtworks.rslist;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Lets the reads of GET requests go to a replica, except for a client that wrote within the last
+ * {@code sticky-window}: a vote, buy or new event hands out a cookie naming until when that
+ * client reads from the primary, so it sees its own write however far the replicas lag.
+ */
+public class ReplicaStickinessFilter extends OncePerRequestFilter {
+  static final String COOKIE = "rs-primary-until";
+
+  private final long stickyWindow;
+
+  public ReplicaStickinessFilter(long stickyWindow) {
+    this.stickyWindow = stickyWindow;
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+      throws ServletException, IOException {
+    long now = System.currentTimeMillis();
+    if (!HttpMethod.GET.matches(request.getMethod())) {
+      // set before the response is committed; a failed write just reads from the primary a while
+      Cookie cookie = new Cookie(COOKIE, Long.toString(now + stickyWindow));
+      cookie.setPath("/");
+      cookie.setHttpOnly(true);
+      cookie.setMaxAge((int) Math.max(1, stickyWindow / 1000));
+      response.addCookie(cookie);
+      chain.doFilter(request, response);
+      return;
+    }
+    if (primaryUntil(request) > now) {
+      chain.doFilter(request, response);
+      return;
+    }
+    ReplicaRoutingDataSource.allowReplicaReads();
+    try {
+      chain.doFilter(request, response);
+    } finally {
+      ReplicaRoutingDataSource.reset();
+    }
+  }
+
+  private static long primaryUntil(HttpServletRequest request) {
+    if (request.getCookies() == null) {
+      return 0;
+    }
+    for (Cookie cookie : request.getCookies()) {
+      if (COOKIE.equals(cookie.getName())) {
+        try {
+          return Long.parseLong(cookie.getValue());
+        } catch (NumberFormatException e) {
+          return 0;
+        }
+      }
+    }
+    return 0;
+  }
+}
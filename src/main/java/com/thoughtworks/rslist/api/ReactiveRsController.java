@@ -0,0 +1,102 @@
+package com.thoughtworks.rslist.api;
+
+import com.thoughtworks.rslist.domain.Trade;
+import com.thoughtworks.rslist.domain.Vote;
+import com.thoughtworks.rslist.exception.Error;
+import com.thoughtworks.rslist.exception.RequestNotValidException;
+import com.thoughtworks.rslist.service.ReactiveRsService;
+import com.thoughtworks.rslist.service.RsListSnapshot;
+import com.thoughtworks.rslist.service.RsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.Callable;
+
+/**
+ * The rs contract of {@link RsController} on WebFlux, for the reactive profile. Votes and buys are
+ * written through R2DBC. Reads come from the pre-encoded snapshot; rebuilding it, or the database
+ * ranking, still goes through JPA and runs on the bounded elastic scheduler, off the event loop.
+ */
+@RestController
+@Profile("reactive")
+public class ReactiveRsController {
+    @Autowired
+    ReactiveRsService reactiveRsService;
+    @Autowired
+    RsService rsService;
+    @Autowired
+    RsListSnapshot rsListSnapshot;
+
+    @GetMapping("/rs/list")
+    public Mono<ResponseEntity<?>> getRsEventListBetween(
+            @RequestParam(required = false) Integer start, @RequestParam(required = false) Integer end,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return blocking(() -> {
+            if (!rsListSnapshot.isEnabled()) {
+                if (start == null || end == null) {
+                    return ResponseEntity.ok(rsService.getRsEventList());
+                }
+                return ResponseEntity.ok(rsService.getRsEventListBetween(start, end));
+            }
+            if (start != null && end != null) {
+                return json(rsListSnapshot.range(start, end));
+            }
+            if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                byte[] gzipped = rsListSnapshot.gzippedList();
+                if (gzipped != null) {
+                    return ResponseEntity.ok()
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                            .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                            .body(gzipped);
+                }
+            }
+            return json(rsListSnapshot.list());
+        });
+    }
+
+    @GetMapping("/rs/{index}")
+    public Mono<ResponseEntity<?>> getRsEvent(@PathVariable int index) {
+        return blocking(() -> rsListSnapshot.isEnabled()
+                ? json(rsListSnapshot.get(index))
+                : ResponseEntity.ok(rsService.getRsEvent(index)));
+    }
+
+    @PostMapping("/rs/vote/{id}")
+    public Mono<ResponseEntity<Void>> vote(@PathVariable int id, @RequestBody Vote vote) {
+        return reactiveRsService.vote(vote, id).thenReturn(ResponseEntity.ok().build());
+    }
+
+    @PostMapping("/rs/buy/{id}")
+    public Mono<ResponseEntity<Void>> buy(@PathVariable int id, @RequestBody Trade trade) {
+        return reactiveRsService.buy(trade, id).thenReturn(ResponseEntity.ok().build());
+    }
+
+    private static Mono<ResponseEntity<?>> blocking(Callable<ResponseEntity<?>> read) {
+        return Mono.fromCallable(read).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private static ResponseEntity<byte[]> json(byte[] body) {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    @ExceptionHandler(RequestNotValidException.class)
+    public ResponseEntity<Error> handleRequestErrorHandler(RequestNotValidException e) {
+        Error error = new Error();
+        error.setError(e.getMessage());
+        return ResponseEntity.badRequest().body(error);
+    }
+}
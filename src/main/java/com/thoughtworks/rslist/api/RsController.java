@@ -10,8 +10,14 @@ import com.thoughtworks.rslist.exception.RequestNotValidException;
 import com.thoughtworks.rslist.repository.RsEventRepository;
 import com.thoughtworks.rslist.repository.TradeRepository;
 import com.thoughtworks.rslist.repository.UserRepository;
+import com.thoughtworks.rslist.service.RankingStream;
+import com.thoughtworks.rslist.service.RsEventExport;
+import com.thoughtworks.rslist.service.RsListSnapshot;
 import com.thoughtworks.rslist.service.RsService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -19,15 +25,20 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @RestController
+// servlet stack only; the reactive profile serves the rs endpoints from ReactiveRsController
+@Profile("!reactive")
 @Validated
 public class RsController {
     @Autowired
@@ -38,44 +49,61 @@ public class RsController {
     RsService rsService;
     @Autowired
     TradeRepository tradeRepository;
+    @Autowired
+    RsListSnapshot rsListSnapshot;
+    @Autowired
+    RankingStream rankingStream;
+    @Autowired
+    RsEventExport rsEventExport;
 
     @GetMapping("/rs/list")
-    public ResponseEntity<List<RsEvent>> getRsEventListBetween(
-            @RequestParam(required = false) Integer start, @RequestParam(required = false) Integer end) {
-        List<RsEvent> rsEvents =
-                rsEventRepository.findAll().stream()
-                        .map(
-                                item ->
-                                        RsEvent.builder()
-                                                .eventName(item.getEventName())
-                                                .keyword(item.getKeyword())
-                                                .userId(item.getId())
-                                                .voteNum(item.getVoteNum())
-                                                .build())
-                        .collect(Collectors.toList());
-        if (start == null || end == null) {
-            return ResponseEntity.ok(rsEvents);
+    public ResponseEntity<?> getRsEventListBetween(
+            @RequestParam(required = false) Integer start, @RequestParam(required = false) Integer end,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        if (!rsListSnapshot.isEnabled()) {
+            if (start == null || end == null) {
+                return ResponseEntity.ok(rsService.getRsEventList());
+            }
+            return ResponseEntity.ok(rsService.getRsEventListBetween(start, end));
+        }
+        if (start != null && end != null) {
+            return json(rsListSnapshot.range(start, end));
         }
-        return ResponseEntity.ok(rsEvents.subList(start - 1, end));
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            byte[] gzipped = rsListSnapshot.gzippedList();
+            if (gzipped != null) {
+                return ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                        .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                        .body(gzipped);
+            }
+        }
+        return json(rsListSnapshot.list());
+    }
+
+    @GetMapping(value = "/rs/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamRanking() {
+        return rankingStream.subscribe();
+    }
+
+    /**
+     * Every rs event in id order, one JSON object per line, written to the response while the rows
+     * are read. For bulk consumers that would otherwise pull the whole list through /rs/list.
+     */
+    @GetMapping("/rs/export")
+    public void exportRsEvents(HttpServletResponse response) throws IOException {
+        response.setContentType(RsEventExport.CONTENT_TYPE);
+        response.setCharacterEncoding("UTF-8");
+        rsEventExport.writeTo(response.getOutputStream());
     }
 
     @GetMapping("/rs/{index}")
-    public ResponseEntity<RsEvent> getRsEvent(@PathVariable int index) {
-        List<RsEvent> rsEvents =
-                rsEventRepository.findAll().stream()
-                        .map(
-                                item ->
-                                        RsEvent.builder()
-                                                .eventName(item.getEventName())
-                                                .keyword(item.getKeyword())
-                                                .userId(item.getId())
-                                                .voteNum(item.getVoteNum())
-                                                .build())
-                        .collect(Collectors.toList());
-        if (index < 1 || index > rsEvents.size()) {
-            throw new RequestNotValidException("invalid index");
+    public ResponseEntity<?> getRsEvent(@PathVariable int index) {
+        if (!rsListSnapshot.isEnabled()) {
+            return ResponseEntity.ok(rsService.getRsEvent(index));
         }
-        return ResponseEntity.ok(rsEvents.get(index - 1));
+        return json(rsListSnapshot.get(index));
     }
 
     @PostMapping("/rs/event")
@@ -91,7 +119,7 @@ public class RsController {
                         .voteNum(0)
                         .user(userDto.get())
                         .build();
-        rsEventRepository.save(build);
+        rsService.addRsEvent(build);
         return ResponseEntity.created(null).build();
     }
 
@@ -101,6 +129,12 @@ public class RsController {
         return ResponseEntity.ok().build();
     }
 
+    @PostMapping("/rs/votes")
+    public ResponseEntity voteAll(@RequestBody List<Vote> votes) {
+        rsService.voteAll(votes);
+        return ResponseEntity.ok().build();
+    }
+
     @PostMapping("/rs/buy/{id}")
     public ResponseEntity buy(@PathVariable int id, @RequestBody Trade trade) {
         rsService.buy(trade, id);
@@ -108,6 +142,10 @@ public class RsController {
     }
 
 
+    private static ResponseEntity<byte[]> json(byte[] body) {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
     @ExceptionHandler(RequestNotValidException.class)
     public ResponseEntity<Error> handleRequestErrorHandler(RequestNotValidException e) {
         Error error = new Error();
@@ -1,11 +1,76 @@
 package com.thoughtworks.rslist.api;
 
+import com.thoughtworks.rslist.domain.TradePrices;
+import com.thoughtworks.rslist.exception.Error;
+import com.thoughtworks.rslist.exception.RequestNotValidException;
+import com.thoughtworks.rslist.repository.TradePriceRollupRepository;
 import com.thoughtworks.rslist.repository.TradeRepository;
+import com.thoughtworks.rslist.service.TradeLedger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
 @RestController
+// not registered in the reactive profile, so the price history is not served there
+@Profile("!reactive")
 public class TradeController {
     @Autowired
     TradeRepository tradeRepository;
+    @Autowired
+    TradePriceRollupRepository tradePriceRollupRepository;
+    @Autowired
+    TradeLedger tradeLedger;
+
+    /**
+     * Price rollups of a ranking per time bucket, oldest first, for the buckets overlapping
+     * [from, to]; the last 24 hours by default. Read from the rollup table alone, so price queries
+     * neither scan the ledger nor touch the trade rows that buys lock.
+     */
+    @GetMapping("/trade/{ranking}/prices")
+    public ResponseEntity<List<TradePrices>> getPrices(
+            @PathVariable int ranking,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        if (ranking < 1) {
+            throw new RequestNotValidException("invalid ranking");
+        }
+        LocalDateTime end = to == null ? LocalDateTime.now() : to;
+        LocalDateTime start = from == null ? end.minusDays(1) : from;
+        if (start.isAfter(end)) {
+            throw new RequestNotValidException("invalid time range");
+        }
+        return ResponseEntity.ok(
+                tradePriceRollupRepository
+                        .findAllByRankingAndBucketBetweenOrderByBucket(ranking, tradeLedger.bucketOf(start), end).stream()
+                        .map(
+                                rollup ->
+                                        TradePrices.builder()
+                                                .ranking(rollup.getRanking())
+                                                .bucket(rollup.getBucket())
+                                                .attempts(rollup.getAttempts())
+                                                .trades(rollup.getTrades())
+                                                .minPrice(rollup.getMinPrice())
+                                                .maxPrice(rollup.getMaxPrice())
+                                                .lastPrice(rollup.getLastPrice())
+                                                .lastTradedAt(rollup.getLastTradedAt())
+                                                .build())
+                        .collect(Collectors.toList()));
+    }
+
+    @ExceptionHandler(RequestNotValidException.class)
+    public ResponseEntity<Error> handleRequestErrorHandler(RequestNotValidException e) {
+        Error error = new Error();
+        error.setError(e.getMessage());
+        return ResponseEntity.badRequest().body(error);
+    }
 }
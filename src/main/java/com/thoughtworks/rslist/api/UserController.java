@@ -3,7 +3,9 @@ package com.thoughtworks.rslist.api;
 import com.thoughtworks.rslist.domain.User;
 import com.thoughtworks.rslist.dto.UserDto;
 import com.thoughtworks.rslist.repository.UserRepository;
+import com.thoughtworks.rslist.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -14,8 +16,11 @@ import org.springframework.web.bind.annotation.RestController;
 import javax.validation.Valid;
 
 @RestController
+// not registered in the reactive profile, so /user is not served there
+@Profile("!reactive")
 public class UserController {
   @Autowired UserRepository userRepository;
+  @Autowired UserService userService;
 
   @PostMapping("/user")
   public void register(@RequestBody @Valid User user) {
@@ -31,7 +36,7 @@ public class UserController {
 
   @DeleteMapping("/user/{id}")
   public ResponseEntity deleteUser(@PathVariable int id) {
-    userRepository.deleteById(id);
+    userService.deleteUser(id);
     return ResponseEntity.ok().build();
   }
 }
@@ -1,20 +1,34 @@
 package com.thoughtworks.rslist.api;
 
 import com.thoughtworks.rslist.domain.Vote;
+import com.thoughtworks.rslist.domain.VotePage;
+import com.thoughtworks.rslist.dto.VoteRecord;
+import com.thoughtworks.rslist.exception.Error;
+import com.thoughtworks.rslist.exception.RequestNotValidException;
 import com.thoughtworks.rslist.repository.VoteRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
 import java.util.List;
 import java.util.stream.Collectors;
 
 @RestController
+// not registered in the reactive profile, so the vote record queries are not served there
+@Profile("!reactive")
 public class VoteController {
+    static final int MAX_PAGE_SIZE = 100;
+
     @Autowired
     VoteRepository voteRepository;
 
@@ -34,4 +48,85 @@ public class VoteController {
                                                 .build())
                         .collect(Collectors.toList()));
     }
+
+    /**
+     * Votes of a user, of one rs event or of all of them, oldest first. Pages continue from the
+     * last vote of the previous page instead of skipping an offset, so every page is one index
+     * range scan however deep it is, and no count query runs.
+     */
+    @GetMapping("/voteRecords")
+    public ResponseEntity<VotePage> getVoteRecords(
+            @RequestParam int userId, @RequestParam(required = false) Integer rsEventId,
+            @RequestParam(required = false) String after, @RequestParam(defaultValue = "5") int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new RequestNotValidException("invalid size");
+        }
+        // one extra row tells whether another page follows
+        Pageable limit = PageRequest.of(0, size + 1);
+        List<VoteRecord> records;
+        if (after == null) {
+            records = rsEventId == null
+                    ? voteRepository.findTimeline(userId, limit)
+                    : voteRepository.findRecords(userId, rsEventId, limit);
+        } else {
+            LocalDateTime time = cursorTime(after);
+            int id = cursorId(after);
+            records = rsEventId == null
+                    ? voteRepository.findTimelineAfter(userId, time, id, limit)
+                    : voteRepository.findRecordsAfter(userId, rsEventId, time, id, limit);
+        }
+        boolean hasNext = records.size() > size;
+        List<VoteRecord> page = hasNext ? records.subList(0, size) : records;
+        return ResponseEntity.ok(VotePage.builder()
+                .votes(page.stream()
+                        .map(item -> Vote.builder()
+                                .voteNum(item.getNum())
+                                .userId(item.getUserId())
+                                .time(item.getLocalDateTime())
+                                .rsEventId(item.getRsEventId())
+                                .build())
+                        .collect(Collectors.toList()))
+                .next(hasNext ? cursor(page.get(size - 1)) : null)
+                .build());
+    }
+
+    @ExceptionHandler(RequestNotValidException.class)
+    public ResponseEntity<Error> handleRequestErrorHandler(RequestNotValidException e) {
+        Error error = new Error();
+        error.setError(e.getMessage());
+        return ResponseEntity.badRequest().body(error);
+    }
+
+    private static String cursor(VoteRecord last) {
+        String position = last.getLocalDateTime() + "|" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decode(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+            if (parts.length == 2) {
+                return parts;
+            }
+        } catch (IllegalArgumentException e) {
+            // fall through to the error below
+        }
+        throw new RequestNotValidException("invalid cursor");
+    }
+
+    private static LocalDateTime cursorTime(String cursor) {
+        try {
+            return LocalDateTime.parse(decode(cursor)[0]);
+        } catch (DateTimeParseException e) {
+            throw new RequestNotValidException("invalid cursor");
+        }
+    }
+
+    private static int cursorId(String cursor) {
+        try {
+            return Integer.parseInt(decode(cursor)[1]);
+        } catch (NumberFormatException e) {
+            throw new RequestNotValidException("invalid cursor");
+        }
+    }
 }
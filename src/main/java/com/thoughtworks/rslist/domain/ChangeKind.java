@@ -0,0 +1,13 @@
+package com.thoughtworks.rslist.domain;
+
+/** What a change-log row tells the other nodes to refresh, and what its target id names. */
+public enum ChangeKind {
+  // votes added to an rs event, by the row's delta
+  VOTES,
+  EVENT_CREATED,
+  EVENT_DELETED,
+  // a ranking changed hands; the target is the ranking
+  RANKING,
+  // a user's budget changed or the user was deleted
+  USER
+}
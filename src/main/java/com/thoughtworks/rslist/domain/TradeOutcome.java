@@ -0,0 +1,12 @@
+package com.thoughtworks.rslist.domain;
+
+/** How a buy attempt ended. */
+public enum TradeOutcome {
+  ACCEPTED,
+  // the bid was not higher than the current price
+  OUTBID,
+  // the ranking kept changing under the bid until it ran out of attempts
+  CONTENDED,
+  INVALID,
+  UNKNOWN_EVENT
+}
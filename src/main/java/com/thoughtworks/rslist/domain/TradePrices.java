@@ -0,0 +1,25 @@
+package com.thoughtworks.rslist.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class TradePrices {
+    private int ranking;
+    // start of the time bucket
+    private LocalDateTime bucket;
+    private long attempts;
+    private long trades;
+    // prices of accepted trades only, null when the bucket has none
+    private Double minPrice;
+    private Double maxPrice;
+    private Double lastPrice;
+    private LocalDateTime lastTradedAt;
+}
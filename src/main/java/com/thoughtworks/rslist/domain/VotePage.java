@@ -0,0 +1,18 @@
+package com.thoughtworks.rslist.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class VotePage {
+    private List<Vote> votes;
+    // cursor of the following page, null on the last one
+    private String next;
+}
@@ -0,0 +1,38 @@
+package com.thoughtworks.rslist.dto;
+
+import com.thoughtworks.rslist.domain.ChangeKind;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+@Entity
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "change_log", indexes = @Index(name = "idx_change_log_created_at", columnList = "createdAt"))
+public class ChangeLogDto {
+  // auto increment, so ids follow insert order across nodes and pollers read by id; a pooled
+  // sequence would leave the unused part of every node's block as a gap
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private long id;
+  @Enumerated(EnumType.STRING)
+  private ChangeKind kind;
+  private int targetId;
+  private int delta;
+  // the node that made the change, which has applied it already
+  private String node;
+  private LocalDateTime createdAt;
+}
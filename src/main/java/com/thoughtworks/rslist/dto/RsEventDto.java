@@ -1,23 +1,36 @@
 package com.thoughtworks.rslist.dto;
 
+import com.thoughtworks.rslist.service.LeaderboardEntityListener;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.UpdateTimestamp;
 
 import javax.persistence.*;
+import java.time.LocalDateTime;
 
 @Entity
 @Builder
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-@Table(name = "rsEvent")
+@Table(name = "rsEvent", indexes = {
+    @Index(name = "idx_rs_event_ranking_vote", columnList = "ranking, voteNum DESC, id"),
+    @Index(name = "idx_rs_event_modified", columnList = "modifiedAt")})
+@EntityListeners(LeaderboardEntityListener.class)
+@DynamicUpdate
 public class RsEventDto {
   @Id @GeneratedValue private int id;
   private String eventName;
   private String keyword;
   private int voteNum;
+  // purchased ranking mirrored from the trade table, 0 when the event has not been bought
+  private int ranking;
+  @Version private long version;
+  // last change of the row; the bulk updates in RsEventRepository set it too
+  @UpdateTimestamp private LocalDateTime modifiedAt;
   @ManyToOne private UserDto user;
 
   @OneToOne(mappedBy = "rs_event_dto")
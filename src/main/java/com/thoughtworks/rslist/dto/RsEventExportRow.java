@@ -0,0 +1,6 @@
+package com.thoughtworks.rslist.dto;
+
+/** A line of the export: the ranking's columns and the id of the user who added the event. */
+public interface RsEventExportRow extends RsEventSummary {
+  int getUserId();
+}
@@ -0,0 +1,17 @@
+package com.thoughtworks.rslist.dto;
+
+/**
+ * Columns of an rs event that the ranking reads. Queried as a projection it is fetched in one
+ * statement, without loading the event's user and trade associations.
+ */
+public interface RsEventSummary {
+  int getId();
+
+  String getEventName();
+
+  String getKeyword();
+
+  int getVoteNum();
+
+  int getRanking();
+}
@@ -1,5 +1,6 @@
 package com.thoughtworks.rslist.dto;
 
+import com.thoughtworks.rslist.service.LeaderboardEntityListener;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -12,13 +13,18 @@ import javax.persistence.*;
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
-@Table(name = "trade")
+@Table(name = "trade", uniqueConstraints = @UniqueConstraint(name = TradeDto.RANKING_CONSTRAINT, columnNames = "ranking"))
+@EntityListeners(LeaderboardEntityListener.class)
 public class TradeDto {
+    public static final String RANKING_CONSTRAINT = "uk_trade_ranking";
+
     @Id
     @GeneratedValue
     private int id;
     private double amount;
     private int ranking;
+    @Version
+    private long version;
 
     @OneToOne
     private RsEventDto rs_event_dto;
@@ -0,0 +1,47 @@
+package com.thoughtworks.rslist.dto;
+
+import com.thoughtworks.rslist.domain.TradeOutcome;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+/**
+ * One buy attempt, never updated nor deleted. The event is kept as a plain id, without a foreign
+ * key, so the history outlives events that lose their ranking or are deleted.
+ */
+@Entity
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "trade_ledger", indexes = @Index(name = "idx_trade_ledger_ranking_time", columnList = "ranking, recordedAt"))
+public class TradeLedgerDto {
+  // pooled ids keep the flushed batches batched, as for votes
+  @Id
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "trade_ledger_seq")
+  @GenericGenerator(name = "trade_ledger_seq", strategy = "enhanced-sequence", parameters = {
+      @Parameter(name = "sequence_name", value = "trade_ledger_seq"),
+      @Parameter(name = "increment_size", value = "50"),
+      @Parameter(name = "optimizer", value = "pooled-lo")})
+  private int id;
+
+  private int ranking;
+  private int rsEventId;
+  private double amount;
+  @Enumerated(EnumType.STRING)
+  private TradeOutcome outcome;
+  private LocalDateTime recordedAt;
+}
@@ -0,0 +1,39 @@
+package com.thoughtworks.rslist.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+import javax.persistence.Version;
+import java.time.LocalDateTime;
+
+/** Buy attempts on a ranking within one time bucket, merged into as the trade ledger is written. */
+@Entity
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "trade_price_rollup",
+    uniqueConstraints = @UniqueConstraint(name = "uk_trade_price_rollup_ranking_bucket", columnNames = {"ranking", "bucket"}))
+public class TradePriceRollupDto {
+  @Id
+  @GeneratedValue
+  private int id;
+  private int ranking;
+  private LocalDateTime bucket;
+  private long attempts;
+  private long trades;
+  private Double minPrice;
+  private Double maxPrice;
+  private Double lastPrice;
+  private LocalDateTime lastTradedAt;
+  // another node flushing into the same bucket makes one of the flushes retry
+  @Version
+  private long version;
+}
@@ -0,0 +1,10 @@
+package com.thoughtworks.rslist.dto;
+
+/** Purchased ranking with its price and owner, read without loading the owning event. */
+public interface TradeSlot {
+  int getRanking();
+
+  double getAmount();
+
+  int getRsEventId();
+}
@@ -0,0 +1,24 @@
+package com.thoughtworks.rslist.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+@Entity
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "voteJournalCheckpoint")
+public class VoteJournalCheckpointDto {
+  public static final int ID = 1;
+
+  @Id private int id;
+  // journal position of the first vote not yet applied to the tables
+  private long position;
+}
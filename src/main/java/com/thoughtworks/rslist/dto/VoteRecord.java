@@ -0,0 +1,16 @@
+package com.thoughtworks.rslist.dto;
+
+import java.time.LocalDateTime;
+
+/** Columns of a vote read for the vote history, all of them held by the vote indexes. */
+public interface VoteRecord {
+  int getId();
+
+  int getUserId();
+
+  int getRsEventId();
+
+  int getNum();
+
+  LocalDateTime getLocalDateTime();
+}
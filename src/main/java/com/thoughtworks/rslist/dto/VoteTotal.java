@@ -0,0 +1,8 @@
+package com.thoughtworks.rslist.dto;
+
+/** Votes summed per rs event. */
+public interface VoteTotal {
+  int getRsEventId();
+
+  long getNum();
+}
@@ -0,0 +1,30 @@
+package com.thoughtworks.rslist.repository;
+
+import com.thoughtworks.rslist.dto.ChangeLogDto;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface ChangeLogRepository extends CrudRepository<ChangeLogDto, Long> {
+  @Override
+  List<ChangeLogDto> findAll();
+
+  List<ChangeLogDto> findAllByIdGreaterThanOrderById(long id, Pageable pageable);
+
+  List<ChangeLogDto> findAllByIdIn(Collection<Long> ids);
+
+  @Query("select coalesce(max(c.id), 0) from ChangeLogDto c")
+  long findMaxId();
+
+  @Transactional
+  @Modifying
+  @Query("delete from ChangeLogDto c where c.createdAt < :before")
+  int deleteCreatedBefore(@Param("before") LocalDateTime before);
+}
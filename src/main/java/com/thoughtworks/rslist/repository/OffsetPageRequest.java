@@ -0,0 +1,58 @@
+package com.thoughtworks.rslist.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+/** Pageable for an arbitrary row offset, which PageRequest can only express in whole pages. */
+public class OffsetPageRequest implements Pageable {
+  private final long offset;
+  private final int limit;
+
+  public OffsetPageRequest(long offset, int limit) {
+    if (offset < 0 || limit < 1) {
+      throw new IllegalArgumentException("offset must not be negative and limit must be positive");
+    }
+    this.offset = offset;
+    this.limit = limit;
+  }
+
+  @Override
+  public int getPageNumber() {
+    return (int) (offset / limit);
+  }
+
+  @Override
+  public int getPageSize() {
+    return limit;
+  }
+
+  @Override
+  public long getOffset() {
+    return offset;
+  }
+
+  @Override
+  public Sort getSort() {
+    return Sort.unsorted();
+  }
+
+  @Override
+  public Pageable next() {
+    return new OffsetPageRequest(offset + limit, limit);
+  }
+
+  @Override
+  public Pageable previousOrFirst() {
+    return hasPrevious() ? new OffsetPageRequest(Math.max(0, offset - limit), limit) : first();
+  }
+
+  @Override
+  public Pageable first() {
+    return new OffsetPageRequest(0, limit);
+  }
+
+  @Override
+  public boolean hasPrevious() {
+    return offset > 0;
+  }
+}
@@ -1,14 +1,86 @@
 package com.thoughtworks.rslist.repository;
 
 import com.thoughtworks.rslist.dto.RsEventDto;
-import org.springframework.data.repository.CrudRepository;
-import org.springframework.transaction.annotation.Transactional;
+import com.thoughtworks.rslist.dto.RsEventExportRow;
+import com.thoughtworks.rslist.dto.RsEventSummary;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+public interface RsEventRepository extends JpaRepository<RsEventDto, Integer> {
+  String EXPORT_FETCH_SIZE = "500";
 
-public interface RsEventRepository extends CrudRepository<RsEventDto, Integer> {
   List<RsEventDto> findAll();
 
-  @Transactional
-  void deleteAllByUserId(int userId);
+  List<RsEventSummary> findAllProjectedBy();
+
+  List<RsEventSummary> findAllProjectedByIdIn(Collection<Integer> ids);
+
+  /** Rows changed at or after the given time, and rows that never recorded a change time. */
+  @Query("select e.id as id, e.eventName as eventName, e.keyword as keyword, e.voteNum as voteNum, "
+      + "e.ranking as ranking from RsEventDto e where e.modifiedAt >= :since or e.modifiedAt is null")
+  List<RsEventSummary> findChangedSince(@Param("since") LocalDateTime since);
+
+  @Query("select e.id from RsEventDto e")
+  List<Integer> findAllIds();
+
+  /**
+   * Every event in id order through a forward-only cursor, {@value #EXPORT_FETCH_SIZE} rows per
+   * round trip. Rows are projections, so none of them stays in the persistence context. Must be
+   * consumed and closed inside a transaction.
+   */
+  @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE))
+  @Query("select e.id as id, e.eventName as eventName, e.keyword as keyword, e.voteNum as voteNum, "
+      + "e.ranking as ranking, e.user.id as userId from RsEventDto e order by e.id")
+  Stream<RsEventExportRow> streamAllForExport();
+
+  @Query("select max(e.modifiedAt) from RsEventDto e")
+  LocalDateTime findLastModifiedAt();
+
+  List<RsEventSummary> findAllByRankingOrderByVoteNumDescIdAsc(int ranking, Pageable pageable);
+
+  List<RsEventSummary> findAllByRankingGreaterThanOrderByRankingAsc(int ranking, Pageable pageable);
+
+  List<RsEventSummary> findAllByRankingBetween(int from, int to);
+
+  Optional<RsEventSummary> findByRanking(int ranking);
+
+  int countByRankingBetween(int from, int to);
+
+  int countByRanking(int ranking);
+
+  int countByIdIn(Collection<Integer> ids);
+
+  @Query("select e.id from RsEventDto e where e.id in :ids")
+  List<Integer> findIdsByIdIn(@Param("ids") Collection<Integer> ids);
+
+  @Modifying
+  @Query("update RsEventDto e set e.voteNum = e.voteNum + :delta, e.version = e.version + 1, "
+      + "e.modifiedAt = CURRENT_TIMESTAMP where e.id = :id")
+  int increaseVoteNum(@Param("id") int id, @Param("delta") int delta);
+
+  @Modifying
+  @Query("update RsEventDto e set e.ranking = :ranking, e.version = e.version + 1, "
+      + "e.modifiedAt = CURRENT_TIMESTAMP where e.id = :id")
+  int updateRanking(@Param("id") int id, @Param("ranking") int ranking);
+
+  @Query("select e.id from RsEventDto e where e.user.id = :userId")
+  List<Integer> findIdsByUserId(@Param("userId") int userId);
+
+  /** One statement instead of a load and a delete per event; votes and trades on them must go first. */
+  @Modifying
+  @Query("delete from RsEventDto e where e.user.id = :userId")
+  int deleteAllByUserId(@Param("userId") int userId);
 }
@@ -0,0 +1,11 @@
+package com.thoughtworks.rslist.repository;
+
+import com.thoughtworks.rslist.dto.TradeLedgerDto;
+import org.springframework.data.repository.CrudRepository;
+
+import java.util.List;
+
+public interface TradeLedgerRepository extends CrudRepository<TradeLedgerDto, Integer> {
+  @Override
+  List<TradeLedgerDto> findAll();
+}
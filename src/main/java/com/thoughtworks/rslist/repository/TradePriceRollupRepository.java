@@ -0,0 +1,15 @@
+package com.thoughtworks.rslist.repository;
+
+import com.thoughtworks.rslist.dto.TradePriceRollupDto;
+import org.springframework.data.repository.CrudRepository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface TradePriceRollupRepository extends CrudRepository<TradePriceRollupDto, Integer> {
+  /** Every rollup of the given rankings and buckets; a superset of the pairs a flush touches. */
+  List<TradePriceRollupDto> findAllByRankingInAndBucketIn(Collection<Integer> rankings, Collection<LocalDateTime> buckets);
+
+  List<TradePriceRollupDto> findAllByRankingAndBucketBetweenOrderByBucket(int ranking, LocalDateTime from, LocalDateTime to);
+}
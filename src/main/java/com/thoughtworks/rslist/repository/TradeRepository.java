@@ -1,9 +1,14 @@
 package com.thoughtworks.rslist.repository;
 
-import com.thoughtworks.rslist.domain.Trade;
+import com.thoughtworks.rslist.dto.RsEventDto;
 import com.thoughtworks.rslist.dto.TradeDto;
+import com.thoughtworks.rslist.dto.TradeSlot;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -12,4 +17,26 @@ public interface TradeRepository extends CrudRepository<TradeDto, Integer> {
 
   @Override
   List<TradeDto> findAll();
+
+  @Query("select t.ranking as ranking, t.amount as amount, e.id as rsEventId from TradeDto t join t.rs_event_dto e")
+  List<TradeSlot> findAllSlots();
+
+  @Query("select t.ranking as ranking, t.amount as amount, e.id as rsEventId from TradeDto t join t.rs_event_dto e "
+      + "where e.user.id = :userId")
+  List<TradeSlot> findAllSlotsByUserId(@Param("userId") int userId);
+
+  @Query("select t.ranking as ranking, t.amount as amount, e.id as rsEventId from TradeDto t join t.rs_event_dto e "
+      + "where t.ranking in :rankings")
+  List<TradeSlot> findAllSlotsByRankingIn(@Param("rankings") Collection<Integer> rankings);
+
+  @Modifying
+  @Query("delete from TradeDto t where t.rs_event_dto.id in (select e.id from RsEventDto e where e.user.id = :userId)")
+  int deleteAllByEventUserId(@Param("userId") int userId);
+
+  /** Hands the ranking to a higher bid, only if nobody changed the trade since it was read. */
+  @Modifying
+  @Query("update TradeDto t set t.amount = :amount, t.rs_event_dto = :rsEvent, t.version = t.version + 1 "
+      + "where t.id = :id and t.version = :version and t.amount < :amount")
+  int replaceOwner(@Param("id") int id, @Param("version") long version, @Param("amount") double amount,
+                   @Param("rsEvent") RsEventDto rsEvent);
 }
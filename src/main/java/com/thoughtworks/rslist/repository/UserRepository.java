@@ -1,10 +1,23 @@
 package com.thoughtworks.rslist.repository;
 
 import com.thoughtworks.rslist.dto.UserDto;
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 
-public interface UserRepository extends CrudRepository<UserDto, Integer> {
+public interface UserRepository extends JpaRepository<UserDto, Integer> {
     List<UserDto> findAll();
+
+    /** Takes votes from the user's budget; returns 0 when the user is unknown or short of votes. */
+    @Modifying
+    @Query("update UserDto u set u.voteNum = u.voteNum - :num where u.id = :id and u.voteNum >= :num")
+    int decreaseVoteNum(@Param("id") int id, @Param("num") int num);
+
+    /** Deletes the row only; unlike deleteById it does not load the user nor cascade to its events. */
+    @Modifying
+    @Query("delete from UserDto u where u.id = :id")
+    int deleteRowById(@Param("id") int id);
 }
@@ -0,0 +1,7 @@
+package com.thoughtworks.rslist.repository;
+
+import com.thoughtworks.rslist.dto.VoteJournalCheckpointDto;
+import org.springframework.data.repository.CrudRepository;
+
+public interface VoteJournalCheckpointRepository extends CrudRepository<VoteJournalCheckpointDto, Integer> {
+}
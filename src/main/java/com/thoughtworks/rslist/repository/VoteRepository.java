@@ -1,12 +1,61 @@
 package com.thoughtworks.rslist.repository;
 
 import com.thoughtworks.rslist.dto.VoteDto;
+import com.thoughtworks.rslist.dto.VoteRecord;
+import com.thoughtworks.rslist.dto.VoteTotal;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface VoteRepository extends PagingAndSortingRepository<VoteDto, Integer> {
     List<VoteDto> findAll();
+    // declared queries run without a transaction unless given one; read-only ones may go to a replica
+    @Transactional(readOnly = true)
     List<VoteDto> findAllByUserIdAndRsEventId(int userId, int rsEventId, Pageable pageable);
+
+    String RECORD = "select v.id as id, v.user.id as userId, v.rsEvent.id as rsEventId, v.num as num, "
+        + "v.localDateTime as localDateTime from VoteDto v where v.user.id = :userId ";
+    String AFTER = "and (v.localDateTime > :time or (v.localDateTime = :time and v.id > :id)) ";
+    String ORDER = "order by v.localDateTime, v.id";
+
+    @Transactional(readOnly = true)
+    @Query(RECORD + "and v.rsEvent.id = :rsEventId " + ORDER)
+    List<VoteRecord> findRecords(@Param("userId") int userId, @Param("rsEventId") int rsEventId, Pageable pageable);
+
+    @Transactional(readOnly = true)
+    @Query(RECORD + "and v.rsEvent.id = :rsEventId " + AFTER + ORDER)
+    List<VoteRecord> findRecordsAfter(@Param("userId") int userId, @Param("rsEventId") int rsEventId,
+                                      @Param("time") LocalDateTime time, @Param("id") int id, Pageable pageable);
+
+    @Transactional(readOnly = true)
+    @Query(RECORD + ORDER)
+    List<VoteRecord> findTimeline(@Param("userId") int userId, Pageable pageable);
+
+    @Transactional(readOnly = true)
+    @Query(RECORD + AFTER + ORDER)
+    List<VoteRecord> findTimelineAfter(@Param("userId") int userId, @Param("time") LocalDateTime time,
+                                       @Param("id") int id, Pageable pageable);
+
+    /** What the user cast on events of other users, per event, in id order so concurrent deletions lock alike. */
+    @Query("select v.rsEvent.id as rsEventId, sum(v.num) as num from VoteDto v "
+        + "where v.user.id = :userId and v.rsEvent.user.id <> :userId group by v.rsEvent.id "
+        + "order by v.rsEvent.id")
+    List<VoteTotal> findTotalsOnOtherUsersEvents(@Param("userId") int userId);
+
+    /** Votes cast by the user and votes cast on the user's events, in one statement. */
+    @Modifying
+    @Query("delete from VoteDto v where v.user.id = :userId "
+        + "or v.rsEvent.id in (select e.id from RsEventDto e where e.user.id = :userId)")
+    int deleteAllOfUser(@Param("userId") int userId);
+
+    /** Votes on an event that is about to be deleted; they reference it. */
+    @Modifying
+    @Query("delete from VoteDto v where v.rsEvent.id = :rsEventId")
+    int deleteAllByRsEventId(@Param("rsEventId") int rsEventId);
 }
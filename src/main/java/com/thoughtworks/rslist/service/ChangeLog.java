@@ -0,0 +1,71 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.domain.ChangeKind;
+import com.thoughtworks.rslist.dto.ChangeLogDto;
+import com.thoughtworks.rslist.repository.ChangeLogRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Change log for several nodes on one database ({@code rslist.change-log.enabled}). Votes, buys,
+ * event creation and user deletion add rows naming what they changed, inside their own
+ * transaction, so a row commits exactly when its change does. Every node's
+ * {@link ChangeLogPoller} reads the rows of the other nodes and brings its caches up to date.
+ */
+@Component
+public class ChangeLog {
+  final ChangeLogRepository changeLogRepository;
+  final boolean enabled;
+  final String node;
+
+  public ChangeLog(ChangeLogRepository changeLogRepository,
+                   @Value("${rslist.change-log.enabled:false}") boolean enabled,
+                   @Value("${rslist.change-log.node:}") String node) {
+    this.changeLogRepository = changeLogRepository;
+    this.enabled = enabled;
+    this.node = node.isEmpty() ? UUID.randomUUID().toString() : node;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public String node() {
+    return node;
+  }
+
+  /** Must run in the transaction that makes the change. */
+  public void record(ChangeKind kind, int targetId) {
+    if (enabled) {
+      changeLogRepository.save(row(kind, targetId, 0));
+    }
+  }
+
+  public void recordAll(ChangeKind kind, Collection<Integer> targetIds) {
+    if (enabled && !targetIds.isEmpty()) {
+      changeLogRepository.saveAll(targetIds.stream().map(id -> row(kind, id, 0)).collect(Collectors.toList()));
+    }
+  }
+
+  /** Votes added per rs event, and the users whose budgets paid for them. */
+  public void recordVotes(Map<Integer, Integer> votesByEvent, Collection<Integer> userIds) {
+    if (enabled) {
+      changeLogRepository.saveAll(
+          votesByEvent.entrySet().stream()
+              .map(entry -> row(ChangeKind.VOTES, entry.getKey(), entry.getValue()))
+              .collect(Collectors.toList()));
+      recordAll(ChangeKind.USER, userIds);
+    }
+  }
+
+  private ChangeLogDto row(ChangeKind kind, int targetId, int delta) {
+    return ChangeLogDto.builder().kind(kind).targetId(targetId).delta(delta).node(node).createdAt(LocalDateTime.now())
+        .build();
+  }
+}
@@ -0,0 +1,186 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.dto.ChangeLogDto;
+import com.thoughtworks.rslist.dto.RsEventSummary;
+import com.thoughtworks.rslist.dto.TradeSlot;
+import com.thoughtworks.rslist.repository.ChangeLogRepository;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.TradeRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Applies the change-log rows of the other nodes to this node's leaderboard, slot table, vote
+ * budgets, a batch at a time and in id order. Vote counts travel as
+ * deltas; new events and purchased rankings are read again from the database.
+ *
+ * <p>Ids are taken at insert but become visible at commit, so a missing id below the last one
+ * read may still turn up. Such gaps are asked for again on every poll until {@code gap-timeout}
+ * passes, after which the id is taken for a rolled back transaction.
+ */
+@Slf4j
+@Component
+public class ChangeLogPoller {
+  final ChangeLog changeLog;
+  final ChangeLogRepository changeLogRepository;
+  final RsEventRepository rsEventRepository;
+  final TradeRepository tradeRepository;
+  final Leaderboard leaderboard;
+  final RankingSlotTable rankingSlotTable;
+  final JournaledVotes journaledVotes;
+  final int batchSize;
+  final long gapTimeout;
+  final int maxGaps;
+  final long retention;
+
+  // -1 until the leaderboard is loaded: rows up to the one read with it are in the loaded state
+  private long lastId = -1;
+  // ids skipped so far, with the time they were first missed
+  private Map<Long, Long> gaps = new LinkedHashMap<>();
+
+  public ChangeLogPoller(
+      ChangeLog changeLog,
+      ChangeLogRepository changeLogRepository,
+      RsEventRepository rsEventRepository,
+      TradeRepository tradeRepository,
+      Leaderboard leaderboard,
+      RankingSlotTable rankingSlotTable,
+      JournaledVotes journaledVotes,
+      @Value("${rslist.change-log.batch-size:500}") int batchSize,
+      @Value("${rslist.change-log.gap-timeout:10000}") long gapTimeout,
+      @Value("${rslist.change-log.max-gaps:1000}") int maxGaps,
+      @Value("${rslist.change-log.retention:3600000}") long retention) {
+    this.changeLog = changeLog;
+    this.changeLogRepository = changeLogRepository;
+    this.rsEventRepository = rsEventRepository;
+    this.tradeRepository = tradeRepository;
+    this.leaderboard = leaderboard;
+    this.rankingSlotTable = rankingSlotTable;
+    this.journaledVotes = journaledVotes;
+    this.batchSize = batchSize;
+    this.gapTimeout = gapTimeout;
+    this.maxGaps = maxGaps;
+    this.retention = retention;
+  }
+
+  /** Called in the transaction that loads the leaderboard, before it reads any event. */
+  public synchronized void start() {
+    if (changeLog.isEnabled()) {
+      lastId = changeLogRepository.findMaxId();
+      gaps = new LinkedHashMap<>();
+    }
+  }
+
+  @Scheduled(fixedDelayString = "${rslist.change-log.poll-interval:500}")
+  public synchronized void poll() {
+    if (!changeLog.isEnabled() || lastId < 0) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    Map<Long, Long> nextGaps = new LinkedHashMap<>(gaps);
+    List<ChangeLogDto> rows = new ArrayList<>();
+    if (!nextGaps.isEmpty()) {
+      for (ChangeLogDto late : changeLogRepository.findAllByIdIn(nextGaps.keySet())) {
+        nextGaps.remove(late.getId());
+        rows.add(late);
+      }
+    }
+    long nextLastId = lastId;
+    for (ChangeLogDto row : changeLogRepository.findAllByIdGreaterThanOrderById(lastId, PageRequest.of(0, batchSize))) {
+      for (long missing = Math.max(nextLastId + 1, row.getId() - maxGaps); missing < row.getId(); missing++) {
+        nextGaps.put(missing, now);
+      }
+      nextLastId = row.getId();
+      rows.add(row);
+    }
+    nextGaps.values().removeIf(since -> now - since > gapTimeout);
+    while (nextGaps.size() > maxGaps) {
+      nextGaps.remove(nextGaps.keySet().iterator().next());
+    }
+    apply(rows);
+    lastId = nextLastId;
+    gaps = nextGaps;
+  }
+
+  /** Rows leave the table once every node must have read them. */
+  @Scheduled(fixedDelayString = "${rslist.change-log.cleanup-interval:60000}")
+  public void cleanUp() {
+    if (changeLog.isEnabled()) {
+      changeLogRepository.deleteCreatedBefore(LocalDateTime.now().minus(Duration.ofMillis(retention)));
+    }
+  }
+
+  // every read comes first, so a failed poll changes nothing and is retried as a whole
+  private void apply(List<ChangeLogDto> rows) {
+    Map<Integer, Integer> votes = new HashMap<>();
+    Set<Integer> created = new LinkedHashSet<>();
+    Set<Integer> deleted = new LinkedHashSet<>();
+    Set<Integer> rankings = new LinkedHashSet<>();
+    Set<Integer> users = new LinkedHashSet<>();
+    for (ChangeLogDto row : rows) {
+      if (changeLog.node().equals(row.getNode())) {
+        continue;
+      }
+      switch (row.getKind()) {
+        case VOTES:
+          votes.merge(row.getTargetId(), row.getDelta(), Integer::sum);
+          break;
+        case EVENT_CREATED:
+          created.add(row.getTargetId());
+          break;
+        case EVENT_DELETED:
+          deleted.add(row.getTargetId());
+          break;
+        case RANKING:
+          rankings.add(row.getTargetId());
+          break;
+        case USER:
+          users.add(row.getTargetId());
+          break;
+        default:
+          throw new IllegalStateException("unknown change " + row.getKind());
+      }
+    }
+    List<RsEventSummary> newEvents = created.isEmpty()
+        ? Collections.emptyList() : rsEventRepository.findAllProjectedByIdIn(created);
+    Map<Integer, TradeSlot> slots = new HashMap<>();
+    if (!rankings.isEmpty()) {
+      tradeRepository.findAllSlotsByRankingIn(rankings).forEach(slot -> slots.put(slot.getRanking(), slot));
+    }
+
+    // a new event starts from no votes; the votes it has by now arrive as their own rows
+    newEvents.stream()
+        .filter(summary -> !leaderboard.find(summary.getId()).isPresent())
+        .forEach(summary -> leaderboard.put(Leaderboard.Entry.of(summary).toBuilder().voteNum(0).build()));
+    votes.forEach(leaderboard::addVotes);
+    for (int ranking : rankings) {
+      TradeSlot slot = slots.get(ranking);
+      if (slot == null) {
+        leaderboard.clearSlot(ranking);
+        rankingSlotTable.clear(ranking);
+      } else {
+        leaderboard.setSlot(ranking, slot.getRsEventId());
+        rankingSlotTable.put(ranking, slot.getAmount(), slot.getRsEventId());
+      }
+    }
+    leaderboard.removeAll(deleted);
+    users.forEach(journaledVotes::forgetBudget);
+    if (!rows.isEmpty()) {
+      log.debug("applied {} change-log rows", rows.size());
+    }
+  }
+}
@@ -0,0 +1,92 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.dto.RsEventSummary;
+import com.thoughtworks.rslist.repository.OffsetPageRequest;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Ranking read straight from the database with {@code rslist.ranking.source=database}. A window
+ * reads the purchased rows inside it plus one offset page of the unpurchased rows, so ranks 1-10
+ * touch about 10 rows instead of the whole table. Rows are read as {@link RsEventSummary}
+ * projections in read-only transactions, so neither associations nor dirty checking come along.
+ * The table is counted once per window or position read, for where the purchased rankings past
+ * the end of the list go.
+ */
+@Component
+@Primary
+@Transactional(readOnly = true)
+@ConditionalOnProperty(name = "rslist.ranking.source", havingValue = "database")
+public class DatabaseRanking implements Ranking {
+  final RsEventRepository rsEventRepository;
+
+  public DatabaseRanking(RsEventRepository rsEventRepository) {
+    this.rsEventRepository = rsEventRepository;
+  }
+
+  @Override
+  public int size() {
+    return (int) rsEventRepository.count();
+  }
+
+  @Override
+  public Optional<Leaderboard.Entry> get(int position) {
+    int size = size();
+    if (position < 1 || position > size) {
+      return Optional.empty();
+    }
+    Optional<RsEventSummary> purchased = rsEventRepository.findByRanking(position);
+    if (purchased.isPresent()) {
+      return purchased.map(Leaderboard.Entry::of);
+    }
+    return window(position, position, size).stream().findFirst();
+  }
+
+  @Override
+  public List<Leaderboard.Entry> window(int start, int end) {
+    return window(start, end, size());
+  }
+
+  private List<Leaderboard.Entry> window(int start, int end, int size) {
+    int last = Math.min(end, size);
+    if (start < 1 || start > last) {
+      return Collections.emptyList();
+    }
+    Map<Integer, RsEventSummary> purchased = new HashMap<>();
+    rsEventRepository.findAllByRankingBetween(start, last).forEach(e -> purchased.put(e.getRanking(), e));
+    int unplacedIndex = start - 1 - (start > 1 ? rsEventRepository.countByRankingBetween(1, start - 1) : 0);
+    int needed = last - start + 1 - purchased.size();
+
+    List<RsEventSummary> unplaced = new ArrayList<>(needed);
+    if (needed > 0) {
+      unplaced.addAll(
+          rsEventRepository.findAllByRankingOrderByVoteNumDescIdAsc(
+              0, new OffsetPageRequest(unplacedIndex, needed)));
+    }
+    if (unplaced.size() < needed) {
+      int overflowIndex = Math.max(0, unplacedIndex - rsEventRepository.countByRanking(0));
+      unplaced.addAll(
+          rsEventRepository.findAllByRankingGreaterThanOrderByRankingAsc(
+              size, new OffsetPageRequest(overflowIndex, needed - unplaced.size())));
+    }
+
+    List<Leaderboard.Entry> result = new ArrayList<>(last - start + 1);
+    Iterator<RsEventSummary> next = unplaced.iterator();
+    for (int position = start; position <= last && (purchased.containsKey(position) || next.hasNext()); position++) {
+      RsEventSummary summary = purchased.containsKey(position) ? purchased.get(position) : next.next();
+      result.add(Leaderboard.Entry.of(summary));
+    }
+    return result;
+  }
+}
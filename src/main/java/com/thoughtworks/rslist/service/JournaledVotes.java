@@ -0,0 +1,361 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.domain.Vote;
+import com.thoughtworks.rslist.dto.UserDto;
+import com.thoughtworks.rslist.dto.VoteDto;
+import com.thoughtworks.rslist.dto.VoteJournalCheckpointDto;
+import com.thoughtworks.rslist.exception.RequestNotValidException;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.UserRepository;
+import com.thoughtworks.rslist.repository.VoteJournalCheckpointRepository;
+import com.thoughtworks.rslist.repository.VoteRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Journaled vote ingest ({@code rslist.vote.journal.enabled}). A vote is checked against an
+ * in-memory copy of the user's budget and the leaderboard, appended to the {@link VoteJournal}
+ * and acknowledged; no database work happens on the voting thread. A scheduled applier replays
+ * the journal into the vote, user and rsEvent tables in batches, each batch in one transaction
+ * together with the checkpoint of the next position to apply, so a batch is applied exactly once
+ * however the process stops. On startup everything after the checkpoint is applied before the
+ * application takes traffic. A missing checkpoint row means the tables were created anew, and the
+ * journal is started over, so votes are only kept across restarts with a ddl-auto that keeps them.
+ *
+ * <p>A budget is loaded from the user row on the user's first journaled vote, less the votes
+ * still waiting in the journal; votes that reach the tables some other way are not seen by it,
+ * unless the {@link ChangeLogPoller} reports them and the budget is loaded again. The row is read
+ * without holding up the applier, and read again under its lock only when a batch was applied
+ * meanwhile. Once more than {@code max-budgets} are held, the budgets of users with no votes left
+ * in the journal are dropped after a batch; their rows hold every vote, so they load again as is.
+ */
+@Slf4j
+@Component
+public class JournaledVotes {
+  final UserRepository userRepository;
+  final RsEventRepository rsEventRepository;
+  final VoteRepository voteRepository;
+  final VoteJournalCheckpointRepository checkpointRepository;
+  final TransactionTemplate transactionTemplate;
+  final Leaderboard leaderboard;
+  final ChangeLog changeLog;
+  final boolean enabled;
+  final String dir;
+  final int segmentRecords;
+  final int batchSize;
+  final boolean sync;
+  final int maxBudgets;
+
+  // budgets are installed and batches applied under this lock, so a budget never misses a batch
+  private final Object applyLock = new Object();
+  private final ConcurrentMap<Integer, AtomicInteger> budgets = new ConcurrentHashMap<>();
+  // votes in the journal and not yet applied, only for users that have some
+  private final ConcurrentMap<Integer, Long> pendingByUser = new ConcurrentHashMap<>();
+  // bumped whenever user rows or budgets change under the lock; a budget read before a bump is stale
+  private volatile long budgetGeneration;
+  private VoteJournal journal;
+  private long applied;
+
+  public JournaledVotes(
+      UserRepository userRepository,
+      RsEventRepository rsEventRepository,
+      VoteRepository voteRepository,
+      VoteJournalCheckpointRepository checkpointRepository,
+      TransactionTemplate transactionTemplate,
+      Leaderboard leaderboard,
+      ChangeLog changeLog,
+      @Value("${rslist.vote.journal.enabled:false}") boolean enabled,
+      @Value("${rslist.vote.journal.dir:vote-journal}") String dir,
+      @Value("${rslist.vote.journal.segment-records:1048576}") int segmentRecords,
+      @Value("${rslist.vote.journal.batch-size:1000}") int batchSize,
+      @Value("${rslist.vote.journal.sync:false}") boolean sync,
+      @Value("${rslist.vote.journal.max-budgets:100000}") int maxBudgets) {
+    this.userRepository = userRepository;
+    this.rsEventRepository = rsEventRepository;
+    this.voteRepository = voteRepository;
+    this.checkpointRepository = checkpointRepository;
+    this.transactionTemplate = transactionTemplate;
+    this.leaderboard = leaderboard;
+    this.changeLog = changeLog;
+    this.enabled = enabled;
+    this.dir = dir;
+    this.segmentRecords = segmentRecords;
+    this.batchSize = batchSize;
+    this.sync = sync;
+    this.maxBudgets = maxBudgets;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  @PostConstruct
+  public void open() throws IOException {
+    if (!enabled) {
+      return;
+    }
+    Optional<VoteJournalCheckpointDto> checkpoint = checkpointRepository.findById(VoteJournalCheckpointDto.ID);
+    if (!checkpoint.isPresent()) {
+      // the tables are new, as ddl-auto create makes them on every start: an old journal's votes
+      // belong to rows that are gone, so it is started over rather than replayed
+      int deleted = VoteJournal.delete(Paths.get(dir));
+      if (deleted > 0) {
+        log.warn("no vote journal checkpoint, deleted {} journal segments written against earlier tables", deleted);
+      }
+      checkpointRepository.save(VoteJournalCheckpointDto.builder().id(VoteJournalCheckpointDto.ID).position(0L).build());
+    }
+    applied = checkpoint.map(VoteJournalCheckpointDto::getPosition).orElse(0L);
+    journal = VoteJournal.open(Paths.get(dir), segmentRecords, sync, applied);
+    if (journal.end() < applied || journal.start() > applied) {
+      throw new IllegalStateException(
+          "vote journal holds " + journal.start() + "-" + journal.end() + " but the checkpoint is at " + applied);
+    }
+    for (VoteJournal.Record record : journal.read(applied, (int) Math.min(Integer.MAX_VALUE, journal.end() - applied))) {
+      addPending(record.getUserId(), record.getVoteNum());
+    }
+    log.info("recovering {} journaled votes", journal.end() - applied);
+    while (applied < journal.end()) {
+      if (!applyBatch()) {
+        throw new IllegalStateException("could not apply the vote journal at " + applied);
+      }
+    }
+  }
+
+  /** Journals one vote; throws like the transactional vote when the budget or the event is missing. */
+  public void append(Vote vote, int rsEventId) {
+    if (vote.getVoteNum() < 0 || !leaderboard.find(rsEventId).isPresent()) {
+      throw new RuntimeException();
+    }
+    AtomicInteger budget = reserve(vote.getUserId(), vote.getVoteNum());
+    if (budget == null) {
+      throw new RuntimeException();
+    }
+    write(vote, rsEventId, budget);
+  }
+
+  /** Journals a batch of votes if every user can afford their part of it, otherwise none of them. */
+  public void appendAll(List<Vote> votes) {
+    Map<Integer, Integer> votesByUser = new LinkedHashMap<>();
+    try {
+      for (Vote vote : votes) {
+        if (vote.getVoteNum() < 0 || !leaderboard.find(vote.getRsEventId()).isPresent()) {
+          throw new RequestNotValidException("invalid vote");
+        }
+        // a wrapped sum would reserve a negative amount and mint budget
+        votesByUser.merge(vote.getUserId(), vote.getVoteNum(), Math::addExact);
+      }
+    } catch (ArithmeticException e) {
+      throw new RequestNotValidException("invalid vote");
+    }
+    Map<Integer, AtomicInteger> reserved = new HashMap<>();
+    for (Map.Entry<Integer, Integer> entry : votesByUser.entrySet()) {
+      AtomicInteger budget = reserve(entry.getKey(), entry.getValue());
+      if (budget == null) {
+        reserved.forEach((userId, charged) -> charged.addAndGet(votesByUser.get(userId)));
+        throw new RequestNotValidException("invalid vote");
+      }
+      reserved.put(entry.getKey(), budget);
+    }
+    votes.forEach(vote -> write(vote, vote.getRsEventId(), reserved.get(vote.getUserId())));
+  }
+
+  /** Drops the in-memory budget, so the next vote loads it from the user row again. */
+  public void forgetBudget(int userId) {
+    synchronized (applyLock) {
+      budgets.remove(userId);
+      budgetGeneration++;
+    }
+  }
+
+  int budgetCount() {
+    return budgets.size();
+  }
+
+  @Scheduled(fixedDelayString = "${rslist.vote.journal.apply-interval:200}")
+  public void apply() {
+    if (!enabled) {
+      return;
+    }
+    while (applied < journal.end() && applyBatch()) {
+      // keep going until caught up or a batch fails; a failed batch is retried on the next run
+    }
+  }
+
+  @PreDestroy
+  public void close() throws IOException {
+    if (enabled) {
+      apply();
+      journal.close();
+    }
+  }
+
+  private void write(Vote vote, int rsEventId, AtomicInteger budget) {
+    long time = vote.getTime() == null
+        ? System.currentTimeMillis()
+        : vote.getTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    addPending(vote.getUserId(), vote.getVoteNum());
+    try {
+      journal.append(vote.getUserId(), rsEventId, vote.getVoteNum(), time);
+    } catch (IOException e) {
+      addPending(vote.getUserId(), -vote.getVoteNum());
+      budget.addAndGet(vote.getVoteNum());
+      throw new UncheckedIOException(e);
+    }
+    leaderboard.addVotes(rsEventId, vote.getVoteNum());
+  }
+
+  /** Takes the votes off the user's budget and returns it, or null when the user cannot afford them. */
+  private AtomicInteger reserve(int userId, int voteNum) {
+    AtomicInteger budget = budget(userId);
+    if (budget == null) {
+      return null;
+    }
+    while (true) {
+      int left = budget.get();
+      if (left < voteNum) {
+        return null;
+      }
+      if (budget.compareAndSet(left, left - voteNum)) {
+        return budget;
+      }
+    }
+  }
+
+  private AtomicInteger budget(int userId) {
+    AtomicInteger budget = budgets.get(userId);
+    if (budget != null) {
+      return budget;
+    }
+    long generation = budgetGeneration;
+    Optional<UserDto> user = userRepository.findById(userId);
+    synchronized (applyLock) {
+      budget = budgets.get(userId);
+      if (budget != null) {
+        return budget;
+      }
+      if (budgetGeneration != generation) {
+        // a batch was applied while the row was read, which may or may not have seen it
+        user = userRepository.findById(userId);
+      }
+      if (!user.isPresent()) {
+        return null;
+      }
+      budget = new AtomicInteger(user.get().getVoteNum() - (int) pending(userId));
+      budgets.put(userId, budget);
+      return budget;
+    }
+  }
+
+  private long pending(int userId) {
+    return pendingByUser.getOrDefault(userId, 0L);
+  }
+
+  private void addPending(int userId, long voteNum) {
+    pendingByUser.merge(userId, voteNum, (left, added) -> left + added == 0 ? null : left + added);
+  }
+
+  private boolean applyBatch() {
+    synchronized (applyLock) {
+      List<VoteJournal.Record> records = journal.read(applied, batchSize);
+      if (records.isEmpty()) {
+        // another thread caught up while this one waited for the lock
+        return true;
+      }
+      long next = applied + records.size();
+      List<VoteJournal.Record> dropped;
+      try {
+        dropped = transactionTemplate.execute(status -> applyInTransaction(records, next));
+      } catch (RuntimeException e) {
+        log.error("failed to apply journaled votes from {}", applied, e);
+        return false;
+      }
+      applied = next;
+      budgetGeneration++;
+      records.forEach(record -> addPending(record.getUserId(), -record.getVoteNum()));
+      for (VoteJournal.Record record : dropped) {
+        // acknowledged but not affordable any more: undo it on the board and reload the budget
+        log.warn("dropped journaled vote {}", record);
+        leaderboard.addVotes(record.getRsEventId(), -record.getVoteNum());
+        budgets.remove(record.getUserId());
+      }
+      if (budgets.size() > maxBudgets) {
+        budgets.keySet().removeIf(userId -> !pendingByUser.containsKey(userId));
+      }
+      try {
+        journal.release(applied);
+      } catch (IOException e) {
+        log.warn("failed to delete applied vote journal segments", e);
+      }
+      return true;
+    }
+  }
+
+  private List<VoteJournal.Record> applyInTransaction(List<VoteJournal.Record> records, long next) {
+    Set<Integer> existingEvents =
+        new HashSet<>(
+            rsEventRepository.findIdsByIdIn(
+                records.stream().map(VoteJournal.Record::getRsEventId).collect(Collectors.toSet())));
+    Map<Integer, Integer> votesByUser = new HashMap<>();
+    records.stream()
+        .filter(record -> existingEvents.contains(record.getRsEventId()))
+        .forEach(record -> votesByUser.merge(record.getUserId(), record.getVoteNum(), Integer::sum));
+    Set<Integer> overdrawn = new HashSet<>();
+    votesByUser.forEach(
+        (userId, voteNum) -> {
+          if (userRepository.decreaseVoteNum(userId, voteNum) == 0) {
+            overdrawn.add(userId);
+          }
+        });
+
+    List<VoteJournal.Record> kept = new ArrayList<>(records.size());
+    List<VoteJournal.Record> dropped = new ArrayList<>();
+    for (VoteJournal.Record record : records) {
+      if (existingEvents.contains(record.getRsEventId()) && !overdrawn.contains(record.getUserId())) {
+        kept.add(record);
+      } else {
+        dropped.add(record);
+      }
+    }
+    Map<Integer, Integer> votesByEvent = new HashMap<>();
+    kept.forEach(record -> votesByEvent.merge(record.getRsEventId(), record.getVoteNum(), Integer::sum));
+    votesByEvent.forEach(rsEventRepository::increaseVoteNum);
+    changeLog.recordVotes(votesByEvent, votesByUser.keySet());
+    voteRepository.saveAll(
+        kept.stream()
+            .map(
+                record ->
+                    VoteDto.builder()
+                        .localDateTime(LocalDateTime.ofInstant(Instant.ofEpochMilli(record.getTime()), ZoneId.systemDefault()))
+                        .num(record.getVoteNum())
+                        .rsEvent(rsEventRepository.getOne(record.getRsEventId()))
+                        .user(userRepository.getOne(record.getUserId()))
+                        .build())
+            .collect(Collectors.toList()));
+    checkpointRepository.save(VoteJournalCheckpointDto.builder().id(VoteJournalCheckpointDto.ID).position(next).build());
+    return dropped;
+  }
+}
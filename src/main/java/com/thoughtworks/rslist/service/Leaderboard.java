@@ -0,0 +1,357 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.dto.RsEventSummary;
+import lombok.Builder;
+import lombok.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory ranking of all rs events. Events are ordered by voteNum (desc, ties by id) in an
+ * order-statistic tree and the purchased rankings are laid over that order, so a window of k
+ * positions costs O(log n + k) instead of a full load and sort.
+ *
+ * <p>A purchased ranking beyond the current size cannot be honoured; such events follow all the
+ * unpurchased ones, in ranking order.
+ */
+@Component
+public class Leaderboard implements Ranking {
+  static final Comparator<Entry> BY_VOTES =
+      Comparator.comparingInt(Entry::getVoteNum).reversed().thenComparingInt(Entry::getId);
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Map<Integer, Entry> entries = new HashMap<>();
+  // events without a purchased ranking, in vote order
+  private final OrderStatisticTree<Entry> byVotes = new OrderStatisticTree<>(BY_VOTES);
+  private final TreeMap<Integer, Integer> slots = new TreeMap<>();
+  // purchased rankings again, for counting the ones in front of a position in O(log n)
+  private final OrderStatisticTree<Integer> slotRankings = new OrderStatisticTree<>(Comparator.naturalOrder());
+  private final Map<Integer, Integer> slotOfEvent = new HashMap<>();
+  // bumped on every change, so readers can tell whether something derived from the ranking is stale
+  private volatile long version;
+  private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+  public long version() {
+    return version;
+  }
+
+  @Override
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return entries.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public List<Entry> window(int start, int end) {
+    lock.readLock().lock();
+    try {
+      int size = entries.size();
+      int last = Math.min(end, size);
+      if (start < 1 || start > last) {
+        return Collections.emptyList();
+      }
+      List<Entry> result = new ArrayList<>(last - start + 1);
+      int unplacedIndex = start - 1 - slotRankings.rank(start);
+      Iterator<Entry> unplaced = byVotes.iterator(Math.min(unplacedIndex, byVotes.size()));
+      Iterator<Integer> overflow =
+          slots.tailMap(size, false).values().stream()
+              .skip(Math.max(0, unplacedIndex - byVotes.size()))
+              .iterator();
+      for (int position = start; position <= last; position++) {
+        Integer eventId = slots.get(position);
+        if (eventId == null) {
+          eventId = unplaced.hasNext() ? unplaced.next().getId() : overflow.next();
+        }
+        result.add(entries.get(eventId));
+      }
+      return result;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public Optional<Entry> get(int position) {
+    lock.readLock().lock();
+    try {
+      int size = entries.size();
+      if (position < 1 || position > size) {
+        return Optional.empty();
+      }
+      Integer eventId = slots.get(position);
+      if (eventId == null) {
+        int unplacedIndex = position - 1 - slotRankings.rank(position);
+        eventId =
+            unplacedIndex < byVotes.size()
+                ? byVotes.get(unplacedIndex).getId()
+                : slots.get(slotRankings.get(slotRankings.rank(size + 1) + unplacedIndex - byVotes.size()));
+      }
+      return Optional.of(entries.get(eventId));
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** 1-based position of the event, the inverse of {@link #get(int)}. */
+  public Optional<Integer> position(int eventId) {
+    lock.readLock().lock();
+    try {
+      Entry entry = entries.get(eventId);
+      if (entry == null) {
+        return Optional.empty();
+      }
+      int size = entries.size();
+      Integer ranking = slotOfEvent.get(eventId);
+      if (ranking != null && ranking <= size) {
+        return Optional.of(ranking);
+      }
+      // positions not taken by an in-range slot go first to the unpurchased events, then to the
+      // overflow slots
+      int freeIndex =
+          ranking == null
+              ? byVotes.rank(entry)
+              : byVotes.size() + slotRankings.rank(ranking) - slotRankings.rank(size + 1);
+      return Optional.of(freePosition(freeIndex));
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** Listeners are called under the write lock and must not block or read the leaderboard. */
+  public void addListener(Listener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(Listener listener) {
+    listeners.remove(listener);
+  }
+
+  public List<Entry> all() {
+    return window(1, Integer.MAX_VALUE);
+  }
+
+  public Optional<Entry> find(int eventId) {
+    lock.readLock().lock();
+    try {
+      return Optional.ofNullable(entries.get(eventId));
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** Event currently holding the purchased ranking. */
+  public Optional<Integer> ownerOf(int ranking) {
+    lock.readLock().lock();
+    try {
+      return Optional.ofNullable(slots.get(ranking));
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public void put(Entry entry) {
+    lock.writeLock().lock();
+    try {
+      Entry old = entries.put(entry.getId(), entry);
+      if (old == null) {
+        byVotes.add(entry);
+      } else if (byVotes.remove(old)) {
+        byVotes.add(entry);
+      }
+      version++;
+      fireChanged(entry.getId());
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void addVotes(int eventId, int delta) {
+    lock.writeLock().lock();
+    try {
+      Entry entry = entries.get(eventId);
+      if (entry != null) {
+        put(entry.toBuilder().voteNum(entry.getVoteNum() + delta).build());
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void remove(int eventId) {
+    lock.writeLock().lock();
+    try {
+      Entry entry = entries.get(eventId);
+      if (entry == null) {
+        return;
+      }
+      Integer ranking = slotOfEvent.get(eventId);
+      if (ranking != null) {
+        clearSlot(ranking);
+      }
+      byVotes.remove(entry);
+      entries.remove(eventId);
+      version++;
+      fireChanged(eventId);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Removes many events under one lock and one version bump, e.g. all events of a deleted user. */
+  public void removeAll(Collection<Integer> eventIds) {
+    lock.writeLock().lock();
+    try {
+      List<Integer> removed = new ArrayList<>();
+      for (int eventId : eventIds) {
+        Entry entry = entries.remove(eventId);
+        if (entry == null) {
+          continue;
+        }
+        Integer ranking = slotOfEvent.remove(eventId);
+        if (ranking == null) {
+          byVotes.remove(entry);
+        } else {
+          slots.remove(ranking);
+          slotRankings.remove(ranking);
+        }
+        removed.add(eventId);
+      }
+      if (!removed.isEmpty()) {
+        version++;
+        removed.forEach(this::fireChanged);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Puts the event on a purchased ranking, releasing whatever held that ranking before. */
+  public void setSlot(int ranking, int eventId) {
+    lock.writeLock().lock();
+    try {
+      Entry entry = entries.get(eventId);
+      if (entry == null || ranking < 1) {
+        return;
+      }
+      clearSlot(ranking);
+      Integer previous = slotOfEvent.get(eventId);
+      if (previous != null) {
+        clearSlot(previous);
+      }
+      slots.put(ranking, eventId);
+      slotRankings.add(ranking);
+      slotOfEvent.put(eventId, ranking);
+      byVotes.remove(entry);
+      version++;
+      fireChanged(eventId);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void clearSlot(int ranking) {
+    lock.writeLock().lock();
+    try {
+      Integer eventId = slots.remove(ranking);
+      if (eventId == null) {
+        return;
+      }
+      slotRankings.remove(ranking);
+      slotOfEvent.remove(eventId);
+      byVotes.add(entries.get(eventId));
+      version++;
+      fireChanged(eventId);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Replaces the whole ranking; slots maps a purchased ranking to its event id. */
+  public void reload(Collection<Entry> events, Map<Integer, Integer> purchased) {
+    lock.writeLock().lock();
+    try {
+      entries.clear();
+      byVotes.clear();
+      slots.clear();
+      slotRankings.clear();
+      slotOfEvent.clear();
+      events.forEach(this::put);
+      purchased.forEach(this::setSlot);
+      version++;
+      listeners.forEach(Listener::reloaded);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** The (index+1)-th position that no in-range slot takes: the least p with p = index + 1 + slots up to p. */
+  private int freePosition(int index) {
+    int position = index + 1;
+    while (true) {
+      int next = index + 1 + slotRankings.rank(position + 1);
+      if (next == position) {
+        return position;
+      }
+      position = next;
+    }
+  }
+
+  private void fireChanged(int eventId) {
+    for (Listener listener : listeners) {
+      listener.changed(eventId);
+    }
+  }
+
+  /** Told which event changed its votes, its slot or its presence; other events may shift by one. */
+  public interface Listener {
+    void changed(int eventId);
+
+    /** The whole ranking was replaced. */
+    void reloaded();
+  }
+
+  @Value
+  @Builder(toBuilder = true)
+  public static class Entry {
+    int id;
+    String eventName;
+    String keyword;
+    int voteNum;
+
+    public static Entry of(RsEventDto rsEventDto) {
+      return Entry.builder()
+          .id(rsEventDto.getId())
+          .eventName(rsEventDto.getEventName())
+          .keyword(rsEventDto.getKeyword())
+          .voteNum(rsEventDto.getVoteNum())
+          .build();
+    }
+
+    public static Entry of(RsEventSummary summary) {
+      return Entry.builder()
+          .id(summary.getId())
+          .eventName(summary.getEventName())
+          .keyword(summary.getKeyword())
+          .voteNum(summary.getVoteNum())
+          .build();
+    }
+  }
+}
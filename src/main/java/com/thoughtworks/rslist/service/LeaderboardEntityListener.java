@@ -0,0 +1,65 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.dto.TradeDto;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * Keeps the {@link Leaderboard} and {@link RankingSlotTable} in step with every rs event and trade row created or removed
+ * through JPA, including cascades and writes made outside {@link RsService}.
+ */
+public class LeaderboardEntityListener {
+  @Autowired Leaderboard leaderboard;
+  @Autowired RankingSlotTable rankingSlotTable;
+
+  @PostPersist
+  public void created(Object entity) {
+    if (entity instanceof RsEventDto) {
+      Leaderboard.Entry entry = Leaderboard.Entry.of((RsEventDto) entity);
+      AfterCommit.run(() -> leaderboard.put(entry));
+    } else {
+      updated(entity);
+    }
+  }
+
+  // vote counts are applied by RsService as deltas, so only trade updates are mirrored here
+  @PostUpdate
+  public void updated(Object entity) {
+    if (entity instanceof TradeDto) {
+      TradeDto tradeDto = (TradeDto) entity;
+      if (tradeDto.getRs_event_dto() != null) {
+        int ranking = tradeDto.getRanking();
+        double amount = tradeDto.getAmount();
+        int eventId = tradeDto.getRs_event_dto().getId();
+        AfterCommit.run(
+            () -> {
+              leaderboard.setSlot(ranking, eventId);
+              rankingSlotTable.put(ranking, amount, eventId);
+            });
+      }
+    }
+  }
+
+  @PostRemove
+  public void removed(Object entity) {
+    if (entity instanceof RsEventDto) {
+      int eventId = ((RsEventDto) entity).getId();
+      AfterCommit.run(() -> leaderboard.remove(eventId));
+    } else if (entity instanceof TradeDto) {
+      TradeDto tradeDto = (TradeDto) entity;
+      int ranking = tradeDto.getRanking();
+      Integer eventId = tradeDto.getRs_event_dto() == null ? null : tradeDto.getRs_event_dto().getId();
+      AfterCommit.run(
+          () -> {
+            if (eventId == null || leaderboard.ownerOf(ranking).filter(eventId::equals).isPresent()) {
+              leaderboard.clearSlot(ranking);
+              rankingSlotTable.clear(ranking);
+            }
+          });
+    }
+  }
+}
@@ -0,0 +1,93 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.dto.RsEventSummary;
+import com.thoughtworks.rslist.dto.TradeSlot;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.TradeRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Fills the {@link Leaderboard} and {@link RankingSlotTable} from the database once the application
+ * is up. With a {@link LeaderboardSnapshotFile} the events come from the file instead, and only the
+ * rows changed since its high-water mark, less a margin for clock skew between the nodes and the
+ * database, are read again; a single id scan finds the events deleted or missed since.
+ */
+@Slf4j
+@Component
+public class LeaderboardLoader {
+  final Leaderboard leaderboard;
+  final RankingSlotTable rankingSlotTable;
+  final RsEventRepository rsEventRepository;
+  final TradeRepository tradeRepository;
+  final LeaderboardSnapshotFile snapshotFile;
+  final ChangeLogPoller changeLogPoller;
+  final long catchUpMargin;
+
+  public LeaderboardLoader(Leaderboard leaderboard, RankingSlotTable rankingSlotTable, RsEventRepository rsEventRepository,
+                           TradeRepository tradeRepository, LeaderboardSnapshotFile snapshotFile,
+                           ChangeLogPoller changeLogPoller,
+                           @Value("${rslist.ranking.snapshot-file.catch-up-margin:60000}") long catchUpMargin) {
+    this.leaderboard = leaderboard;
+    this.rankingSlotTable = rankingSlotTable;
+    this.rsEventRepository = rsEventRepository;
+    this.tradeRepository = tradeRepository;
+    this.snapshotFile = snapshotFile;
+    this.changeLogPoller = changeLogPoller;
+    this.catchUpMargin = catchUpMargin;
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  @Transactional(readOnly = true)
+  public void load() {
+    // first: with MySQL's repeatable read this transaction reads one snapshot, so the changes logged up
+    // to the last row seen here are in what is loaded below; later rows and gaps are left to the poller
+    changeLogPoller.start();
+    List<Leaderboard.Entry> events =
+        snapshotFile.read()
+            .map(this::catchUp)
+            .orElseGet(
+                () -> rsEventRepository.findAllProjectedBy().stream().map(Leaderboard.Entry::of).collect(Collectors.toList()));
+    Map<Integer, Integer> purchased = new HashMap<>();
+    Map<Integer, RankingSlotTable.Slot> slots = new HashMap<>();
+    for (TradeSlot tradeSlot : tradeRepository.findAllSlots()) {
+      purchased.put(tradeSlot.getRanking(), tradeSlot.getRsEventId());
+      slots.put(tradeSlot.getRanking(), new RankingSlotTable.Slot(tradeSlot.getAmount(), tradeSlot.getRsEventId()));
+    }
+    leaderboard.reload(events, purchased);
+    rankingSlotTable.reload(slots);
+  }
+
+  private List<Leaderboard.Entry> catchUp(LeaderboardSnapshotFile.Snapshot snapshot) {
+    Map<Integer, Leaderboard.Entry> events = new HashMap<>();
+    snapshot.getEntries().forEach(entry -> events.put(entry.getId(), entry));
+    List<RsEventSummary> changed =
+        snapshot.getHighWaterMark() == null
+            ? rsEventRepository.findAllProjectedBy()
+            : rsEventRepository.findChangedSince(snapshot.getHighWaterMark().minus(Duration.ofMillis(catchUpMargin)));
+    changed.forEach(summary -> events.put(summary.getId(), Leaderboard.Entry.of(summary)));
+
+    Set<Integer> ids = new HashSet<>(rsEventRepository.findAllIds());
+    events.keySet().retainAll(ids);
+    ids.removeAll(events.keySet());
+    if (!ids.isEmpty()) {
+      rsEventRepository.findAllProjectedByIdIn(ids).forEach(summary -> events.put(summary.getId(), Leaderboard.Entry.of(summary)));
+    }
+    log.info("loaded {} events from the leaderboard snapshot, {} read again", snapshot.getEntries().size(),
+        changed.size() + ids.size());
+    return new ArrayList<>(events.values());
+  }
+}
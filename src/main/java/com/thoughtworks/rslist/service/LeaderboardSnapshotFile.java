@@ -0,0 +1,143 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Periodic binary dump of the {@link Leaderboard} ({@code rslist.ranking.snapshot-file.enabled}),
+ * so a restarting node reads its ranking from a local file and only asks the database for the
+ * rows changed since the dump instead of loading every event. The dump records the newest
+ * rsEvent.modifiedAt seen before the board was read as its high-water mark.
+ *
+ * <p>Purchased slots are not dumped: the trade table has at most one row per ranking and is read
+ * in full on startup anyway.
+ */
+@Slf4j
+@Component
+public class LeaderboardSnapshotFile {
+  private static final int MAGIC = 0x52534c42;
+  private static final int FORMAT = 1;
+
+  final Leaderboard leaderboard;
+  final RsEventRepository rsEventRepository;
+  final boolean enabled;
+  final Path path;
+
+  public LeaderboardSnapshotFile(
+      Leaderboard leaderboard,
+      RsEventRepository rsEventRepository,
+      @org.springframework.beans.factory.annotation.Value("${rslist.ranking.snapshot-file.enabled:false}") boolean enabled,
+      @org.springframework.beans.factory.annotation.Value("${rslist.ranking.snapshot-file.path:leaderboard.snapshot}") String path) {
+    this.leaderboard = leaderboard;
+    this.rsEventRepository = rsEventRepository;
+    this.enabled = enabled;
+    this.path = Paths.get(path);
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  @Scheduled(
+      initialDelayString = "${rslist.ranking.snapshot-file.interval:60000}",
+      fixedDelayString = "${rslist.ranking.snapshot-file.interval:60000}")
+  public void scheduledWrite() {
+    if (!enabled) {
+      return;
+    }
+    try {
+      write();
+    } catch (IOException | RuntimeException e) {
+      log.warn("failed to write leaderboard snapshot to {}", path, e);
+    }
+  }
+
+  // the last dump before a rolling restart is the one the next start reads
+  @PreDestroy
+  public void shutdownWrite() {
+    scheduledWrite();
+  }
+
+  public void write() throws IOException {
+    // read the mark first: whatever the board holds afterwards is at least as new
+    LocalDateTime highWaterMark = rsEventRepository.findLastModifiedAt();
+    List<Leaderboard.Entry> entries = leaderboard.all();
+    Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(FORMAT);
+      writeNullable(out, highWaterMark == null ? null : highWaterMark.toString());
+      out.writeInt(entries.size());
+      for (Leaderboard.Entry entry : entries) {
+        out.writeInt(entry.getId());
+        out.writeInt(entry.getVoteNum());
+        writeNullable(out, entry.getEventName());
+        writeNullable(out, entry.getKeyword());
+      }
+    }
+    Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /** The last dump, or empty when there is none or it cannot be read. */
+  public Optional<Snapshot> read() {
+    if (!enabled) {
+      return Optional.empty();
+    }
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+      if (in.readInt() != MAGIC || in.readInt() != FORMAT) {
+        log.warn("ignoring leaderboard snapshot {} of an unknown format", path);
+        return Optional.empty();
+      }
+      String highWaterMark = readNullable(in);
+      int size = in.readInt();
+      List<Leaderboard.Entry> entries = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        entries.add(Leaderboard.Entry.builder().id(in.readInt()).voteNum(in.readInt()).eventName(readNullable(in))
+            .keyword(readNullable(in)).build());
+      }
+      return Optional.of(new Snapshot(highWaterMark == null ? null : LocalDateTime.parse(highWaterMark), entries));
+    } catch (NoSuchFileException e) {
+      return Optional.empty();
+    } catch (IOException | RuntimeException e) {
+      log.warn("ignoring unreadable leaderboard snapshot {}", path, e);
+      return Optional.empty();
+    }
+  }
+
+  private static void writeNullable(DataOutputStream out, String value) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeUTF(value);
+    }
+  }
+
+  private static String readNullable(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+
+  @Value
+  public static class Snapshot {
+    // null when no event had recorded a change time
+    LocalDateTime highWaterMark;
+    List<Leaderboard.Entry> entries;
+  }
+}
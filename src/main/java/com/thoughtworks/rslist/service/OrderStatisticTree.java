@@ -0,0 +1,195 @@
+package com.thoughtworks.rslist.service;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Size-augmented treap. Besides ordered insert/remove it answers "which element is at index i"
+ * and "how many elements are smaller than x" in O(log n). Not thread safe.
+ */
+public class OrderStatisticTree<T> implements Iterable<T> {
+  private final Comparator<? super T> comparator;
+  private Node<T> root;
+
+  public OrderStatisticTree(Comparator<? super T> comparator) {
+    this.comparator = comparator;
+  }
+
+  public int size() {
+    return size(root);
+  }
+
+  public boolean contains(T value) {
+    Node<T> node = root;
+    while (node != null) {
+      int cmp = comparator.compare(value, node.value);
+      if (cmp == 0) {
+        return true;
+      }
+      node = cmp < 0 ? node.left : node.right;
+    }
+    return false;
+  }
+
+  public boolean add(T value) {
+    if (contains(value)) {
+      return false;
+    }
+    Node<T>[] parts = split(root, value, false);
+    root = merge(merge(parts[0], new Node<>(value)), parts[1]);
+    return true;
+  }
+
+  public boolean remove(T value) {
+    Node<T>[] lessAndRest = split(root, value, false);
+    Node<T>[] equalAndGreater = split(lessAndRest[1], value, true);
+    root = merge(lessAndRest[0], equalAndGreater[1]);
+    return equalAndGreater[0] != null;
+  }
+
+  public void clear() {
+    root = null;
+  }
+
+  /** Element at the given 0-based index. */
+  public T get(int index) {
+    if (index < 0 || index >= size()) {
+      throw new IndexOutOfBoundsException("index: " + index + ", size: " + size());
+    }
+    Node<T> node = root;
+    while (true) {
+      int leftSize = size(node.left);
+      if (index < leftSize) {
+        node = node.left;
+      } else if (index == leftSize) {
+        return node.value;
+      } else {
+        index -= leftSize + 1;
+        node = node.right;
+      }
+    }
+  }
+
+  /** Number of elements strictly smaller than the given value. */
+  public int rank(T value) {
+    int rank = 0;
+    Node<T> node = root;
+    while (node != null) {
+      if (comparator.compare(value, node.value) <= 0) {
+        node = node.left;
+      } else {
+        rank += size(node.left) + 1;
+        node = node.right;
+      }
+    }
+    return rank;
+  }
+
+  @Override
+  public Iterator<T> iterator() {
+    return iterator(0);
+  }
+
+  /** In-order iterator starting at the given 0-based index. */
+  public Iterator<T> iterator(int fromIndex) {
+    Deque<Node<T>> stack = new ArrayDeque<>();
+    Node<T> node = root;
+    int index = fromIndex;
+    while (node != null) {
+      int leftSize = size(node.left);
+      if (index <= leftSize) {
+        stack.push(node);
+        if (index == leftSize) {
+          break;
+        }
+        node = node.left;
+      } else {
+        index -= leftSize + 1;
+        node = node.right;
+      }
+    }
+    return new Iterator<T>() {
+      @Override
+      public boolean hasNext() {
+        return !stack.isEmpty();
+      }
+
+      @Override
+      public T next() {
+        if (stack.isEmpty()) {
+          throw new NoSuchElementException();
+        }
+        Node<T> next = stack.pop();
+        for (Node<T> child = next.right; child != null; child = child.left) {
+          stack.push(child);
+        }
+        return next.value;
+      }
+    };
+  }
+
+  /**
+   * Splits into (elements below key, the rest). With {@code inclusive} the key itself goes to the
+   * left part.
+   */
+  @SuppressWarnings("unchecked")
+  private Node<T>[] split(Node<T> node, T key, boolean inclusive) {
+    if (node == null) {
+      return (Node<T>[]) new Node<?>[] {null, null};
+    }
+    int cmp = comparator.compare(node.value, key);
+    if (cmp < 0 || (inclusive && cmp == 0)) {
+      Node<T>[] parts = split(node.right, key, inclusive);
+      node.right = parts[0];
+      node.update();
+      parts[0] = node;
+      return parts;
+    }
+    Node<T>[] parts = split(node.left, key, inclusive);
+    node.left = parts[1];
+    node.update();
+    parts[1] = node;
+    return parts;
+  }
+
+  private Node<T> merge(Node<T> left, Node<T> right) {
+    if (left == null) {
+      return right;
+    }
+    if (right == null) {
+      return left;
+    }
+    if (left.priority > right.priority) {
+      left.right = merge(left.right, right);
+      left.update();
+      return left;
+    }
+    right.left = merge(left, right.left);
+    right.update();
+    return right;
+  }
+
+  private static int size(Node<?> node) {
+    return node == null ? 0 : node.size;
+  }
+
+  private static final class Node<T> {
+    final T value;
+    final int priority = ThreadLocalRandom.current().nextInt();
+    int size = 1;
+    Node<T> left;
+    Node<T> right;
+
+    Node(T value) {
+      this.value = value;
+    }
+
+    void update() {
+      size = 1 + size(left) + size(right);
+    }
+  }
+}
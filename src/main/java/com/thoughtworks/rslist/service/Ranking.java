@@ -0,0 +1,15 @@
+package com.thoughtworks.rslist.service;
+
+import java.util.List;
+import java.util.Optional;
+
+/** Read side of the rs event ranking: vote order with purchased rankings laid over it. */
+public interface Ranking {
+  int size();
+
+  /** Entries at positions [start, end], 1-based and inclusive, clipped to the list size. */
+  List<Leaderboard.Entry> window(int start, int end);
+
+  /** Entry at a 1-based position, without building the list in front of it. */
+  Optional<Leaderboard.Entry> get(int position);
+}
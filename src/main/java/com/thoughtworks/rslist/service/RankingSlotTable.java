@@ -0,0 +1,75 @@
+package com.thoughtworks.rslist.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Current price and owner of every purchased ranking, indexed by ranking. Written through after
+ * each committed trade so that RsService.buy can turn down a bid that is not higher than the
+ * current price without reading the trade table. Only rankings up to
+ * {@code rslist.trade.max-ranking} are kept, which bounds the array; a bid above it is checked
+ * against the trade table inside the buy.
+ */
+@Component
+public class RankingSlotTable {
+  static final int DEFAULT_MAX_RANKING = 1000;
+
+  private final int maxRanking;
+  private volatile AtomicReferenceArray<Slot> slots = new AtomicReferenceArray<>(16);
+
+  public RankingSlotTable() {
+    this(DEFAULT_MAX_RANKING);
+  }
+
+  @Autowired
+  public RankingSlotTable(@Value("${rslist.trade.max-ranking:1000}") int maxRanking) {
+    this.maxRanking = maxRanking;
+  }
+
+  public Slot get(int ranking) {
+    AtomicReferenceArray<Slot> current = slots;
+    return ranking >= 0 && ranking < current.length() ? current.get(ranking) : null;
+  }
+
+  /** True when the ranking is known to be sold for at least the given amount. */
+  public boolean isOutbid(int ranking, double amount) {
+    Slot slot = get(ranking);
+    return slot != null && amount <= slot.getPrice();
+  }
+
+  public synchronized void put(int ranking, double price, int rsEventId) {
+    if (ranking < 0 || ranking > maxRanking) {
+      return;
+    }
+    if (ranking >= slots.length()) {
+      AtomicReferenceArray<Slot> grown =
+          new AtomicReferenceArray<>(Math.min(Math.max(ranking + 1, slots.length() * 2), maxRanking + 1));
+      for (int i = 0; i < slots.length(); i++) {
+        grown.set(i, slots.get(i));
+      }
+      slots = grown;
+    }
+    slots.set(ranking, new Slot(price, rsEventId));
+  }
+
+  public synchronized void clear(int ranking) {
+    if (ranking >= 0 && ranking < slots.length()) {
+      slots.set(ranking, null);
+    }
+  }
+
+  public synchronized void reload(Map<Integer, Slot> purchased) {
+    slots = new AtomicReferenceArray<>(16);
+    purchased.forEach((ranking, slot) -> put(ranking, slot.getPrice(), slot.getRsEventId()));
+  }
+
+  @lombok.Value
+  public static class Slot {
+    double price;
+    int rsEventId;
+  }
+}
@@ -0,0 +1,237 @@
+package com.thoughtworks.rslist.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes ranking changes to subscribers as server-sent events instead of having them poll the
+ * whole list. Every subscriber buffers the ids of the events that changed since its last send, so
+ * ten votes on one event between two sends become one delta carrying the latest state. A
+ * subscriber whose buffer fills up, because it reads slower than the ranking changes, loses the
+ * buffer and gets a "reset" telling it to reload /rs/list instead.
+ *
+ * <p>The scheduled round only hands the sends to a pool of its own, because a send blocks while
+ * the client's socket is full. A subscriber whose previous send has not returned is skipped for
+ * the round. Once that send has waited longer than {@code send-timeout}, the subscriber is
+ * dropped and its stream is closed when the write returns or fails. The pool's queue is bounded:
+ * when it is full, a subscriber misses the round and is sent a reset, so clients that stopped
+ * reading cannot pile up work for the others.
+ *
+ * <p>A delta names the event that changed and its new position; the events between its old and
+ * new position shift by one, which the client applies itself.
+ */
+@Component
+public class RankingStream implements Leaderboard.Listener {
+  static final String DELTA = "delta";
+  static final String RESET = "reset";
+
+  final Leaderboard leaderboard;
+  final int bufferSize;
+  final long timeout;
+  final long sendTimeout;
+
+  private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+  private final ExecutorService sender;
+
+  public RankingStream(Leaderboard leaderboard,
+                       @Value("${rslist.stream.buffer-size:1000}") int bufferSize,
+                       @Value("${rslist.stream.timeout:1800000}") long timeout,
+                       @Value("${rslist.stream.send-threads:4}") int sendThreads,
+                       @Value("${rslist.stream.send-queue:1000}") int sendQueue,
+                       @Value("${rslist.stream.send-timeout:10000}") long sendTimeout) {
+    this.leaderboard = leaderboard;
+    this.bufferSize = bufferSize;
+    this.timeout = timeout;
+    this.sendTimeout = sendTimeout;
+    AtomicInteger threads = new AtomicInteger();
+    this.sender = new ThreadPoolExecutor(sendThreads, sendThreads, 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(sendQueue), runnable -> {
+          Thread thread = new Thread(runnable, "rs-stream-" + threads.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+
+  @PostConstruct
+  public void start() {
+    leaderboard.addListener(this);
+  }
+
+  @PreDestroy
+  public void stop() {
+    leaderboard.removeListener(this);
+    sender.shutdownNow();
+    subscribers.forEach(subscriber -> subscriber.emitter.complete());
+    subscribers.clear();
+  }
+
+  /** Opens a stream; its first message is a reset, so a client loads the list after subscribing and misses nothing. */
+  public SseEmitter subscribe() {
+    SseEmitter emitter = new SseEmitter(timeout);
+    subscribe(emitter);
+    return emitter;
+  }
+
+  Subscriber subscribe(SseEmitter emitter) {
+    Subscriber subscriber = new Subscriber(emitter, bufferSize);
+    emitter.onCompletion(() -> subscribers.remove(subscriber));
+    emitter.onTimeout(emitter::complete);
+    emitter.onError(e -> subscribers.remove(subscriber));
+    subscribers.add(subscriber);
+    return subscriber;
+  }
+
+  int subscriberCount() {
+    return subscribers.size();
+  }
+
+  @Override
+  public void changed(int eventId) {
+    subscribers.forEach(subscriber -> subscriber.changed(eventId));
+  }
+
+  @Override
+  public void reloaded() {
+    subscribers.forEach(Subscriber::reset);
+  }
+
+  @Scheduled(fixedDelayString = "${rslist.stream.interval:500}")
+  public void send() {
+    send(System.currentTimeMillis());
+  }
+
+  void send(long now) {
+    for (Subscriber subscriber : subscribers) {
+      // still busy with an earlier round: its changes stay buffered, and overflow into a reset
+      if (!subscriber.sending.compareAndSet(false, true)) {
+        if (now - subscriber.sendingSince > sendTimeout) {
+          subscribers.remove(subscriber);
+          subscriber.dropped = true;
+        }
+        continue;
+      }
+      subscriber.sendingSince = now;
+      try {
+        sender.execute(() -> {
+          try {
+            if (!subscriber.dropped) {
+              push(subscriber);
+            }
+            if (subscriber.dropped) {
+              // the client may reconnect, starting with a reset
+              subscriber.emitter.complete();
+            }
+          } finally {
+            subscriber.sending.set(false);
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        // every sender is taken and the queue is full: the changes of this round are given up
+        subscriber.reset();
+        subscriber.sending.set(false);
+      }
+    }
+  }
+
+  void push(Subscriber subscriber) {
+    Set<Integer> changed = subscriber.drain();
+    try {
+      if (changed == null) {
+        subscriber.emitter.send(SseEmitter.event().name(RESET).data(""));
+      } else if (!changed.isEmpty()) {
+        subscriber.emitter.send(SseEmitter.event().name(DELTA).data(deltas(changed), MediaType.APPLICATION_JSON));
+      }
+    } catch (IOException | IllegalStateException e) {
+      // the client went away; completing also unregisters it
+      subscribers.remove(subscriber);
+      subscriber.emitter.completeWithError(e);
+    }
+  }
+
+  List<Delta> deltas(Set<Integer> eventIds) {
+    List<Delta> deltas = new ArrayList<>(eventIds.size());
+    for (int eventId : eventIds) {
+      Optional<Leaderboard.Entry> entry = leaderboard.find(eventId);
+      Optional<Integer> position = leaderboard.position(eventId);
+      if (entry.isPresent() && position.isPresent()) {
+        deltas.add(Delta.builder().id(eventId).eventName(entry.get().getEventName()).keyword(entry.get().getKeyword())
+            .voteNum(entry.get().getVoteNum()).position(position.get()).build());
+      } else {
+        deltas.add(Delta.builder().id(eventId).removed(true).build());
+      }
+    }
+    return deltas;
+  }
+
+  static final class Subscriber {
+    final SseEmitter emitter;
+    final int bufferSize;
+    final AtomicBoolean sending = new AtomicBoolean();
+    // when the send in flight was handed to the pool; only read while sending is set
+    volatile long sendingSince;
+    volatile boolean dropped;
+    // null when the next send is a reset: on subscribing and after the buffer overflowed
+    private Set<Integer> changed;
+
+    Subscriber(SseEmitter emitter, int bufferSize) {
+      this.emitter = emitter;
+      this.bufferSize = bufferSize;
+    }
+
+    synchronized void changed(int eventId) {
+      if (changed == null) {
+        return;
+      }
+      changed.add(eventId);
+      if (changed.size() > bufferSize) {
+        changed = null;
+      }
+    }
+
+    synchronized void reset() {
+      changed = null;
+    }
+
+    /** The buffered ids, or null when the subscriber has to reload the whole list. */
+    synchronized Set<Integer> drain() {
+      Set<Integer> drained = changed;
+      changed = new LinkedHashSet<>();
+      return drained == null ? null : Collections.unmodifiableSet(drained);
+    }
+  }
+
+  @lombok.Value
+  @Builder
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  public static class Delta {
+    int id;
+    String eventName;
+    String keyword;
+    Integer voteNum;
+    Integer position;
+    Boolean removed;
+  }
+}
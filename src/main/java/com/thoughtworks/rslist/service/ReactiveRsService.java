@@ -0,0 +1,333 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.domain.ChangeKind;
+import com.thoughtworks.rslist.domain.Trade;
+import com.thoughtworks.rslist.domain.TradeOutcome;
+import com.thoughtworks.rslist.domain.Vote;
+import com.thoughtworks.rslist.exception.RequestNotValidException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.r2dbc.connectionfactory.R2dbcTransactionManager;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Vote and buy for the reactive profile: the conditional updates of {@link RsService}, in the
+ * same order, written through R2DBC in a reactive transaction, so a request holds no thread while
+ * it waits for the database. The leaderboard and the slot table are updated after commit, as
+ * RsService and the JPA entity listener do for the servlet stack.
+ *
+ * <p>Votes are applied directly; write-behind and the journal belong to the servlet stack.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveRsService {
+  static final int VOTE_ID_BLOCK = 50;
+  // outcomes of one buy attempt besides the id of the event it displaced
+  private static final int LOST = -1;
+  private static final int NOTHING_DISPLACED = 0;
+
+  final DatabaseClient databaseClient;
+  final TransactionalOperator transactionalOperator;
+  final TransactionalOperator sequenceOperator;
+  final Leaderboard leaderboard;
+  final RankingSlotTable rankingSlotTable;
+  final MeterRegistry meterRegistry;
+  final TradeLedger tradeLedger;
+  final ChangeLog changeLog;
+  // H2 has sequences; on MySQL Hibernate keeps each one as a one-row table
+  final boolean sequences;
+
+  // the block of vote ids taken from vote_seq: the next free one and the first one past it
+  private long nextVoteId;
+  private long voteIdLimit;
+
+  public ReactiveRsService(ConnectionFactory connectionFactory, Leaderboard leaderboard,
+                           RankingSlotTable rankingSlotTable, MeterRegistry meterRegistry, TradeLedger tradeLedger,
+                           ChangeLog changeLog) {
+    // not beans: a second transaction manager would make every @Transactional ambiguous
+    this.databaseClient = DatabaseClient.create(connectionFactory);
+    R2dbcTransactionManager transactionManager = new R2dbcTransactionManager(connectionFactory);
+    this.transactionalOperator = TransactionalOperator.create(transactionManager);
+    // ids are taken in a transaction of their own, as Hibernate's table generator does, so a buy
+    // does not hold the sequence row, and every JPA insert waiting on it, until it commits
+    this.sequenceOperator = TransactionalOperator.create(
+        transactionManager, new DefaultTransactionDefinition(TransactionDefinition.PROPAGATION_REQUIRES_NEW));
+    this.leaderboard = leaderboard;
+    this.rankingSlotTable = rankingSlotTable;
+    this.meterRegistry = meterRegistry;
+    this.tradeLedger = tradeLedger;
+    this.changeLog = changeLog;
+    this.sequences = connectionFactory.getMetadata().getName().contains("H2");
+  }
+
+  public Mono<Void> vote(Vote vote, int rsEventId) {
+    if (vote.getVoteNum() < 0) {
+      return Mono.error(new RuntimeException());
+    }
+    int voteNum = vote.getVoteNum();
+    LocalDateTime time = vote.getTime() == null ? LocalDateTime.now() : vote.getTime();
+    return nextVoteId()
+        .flatMap(
+            id ->
+                transactionalOperator.transactional(
+                    takeFromBudget(vote.getUserId(), voteNum)
+                        .then(
+                            expectRow(
+                                databaseClient
+                                    .execute("update rs_event set vote_num = vote_num + :voteNum, version = version + 1, "
+                                        + "modified_at = CURRENT_TIMESTAMP where id = :id")
+                                    .bind("voteNum", voteNum)
+                                    .bind("id", rsEventId)
+                                    .fetch()
+                                    .rowsUpdated()))
+                        .then(
+                            databaseClient
+                                .execute("insert into vote (id, local_date_time, num, rs_event_id, user_id) "
+                                    + "values (:id, :time, :num, :rsEventId, :userId)")
+                                .bind("id", id.intValue())
+                                .bind("time", time)
+                                .bind("num", voteNum)
+                                .bind("rsEventId", rsEventId)
+                                .bind("userId", vote.getUserId())
+                                .fetch()
+                                .rowsUpdated())
+                        .then(logChange(ChangeKind.VOTES, rsEventId, voteNum))
+                        .then(logChange(ChangeKind.USER, vote.getUserId(), 0))))
+        .doOnSuccess(done -> leaderboard.addVotes(rsEventId, voteNum))
+        .then();
+  }
+
+  public Mono<Void> buy(Trade trade, int rsEventId) {
+    if (trade.getRanking() < 1) {
+      return Mono.error(rejectBuy(trade, rsEventId, TradeOutcome.INVALID, "invalid ranking"));
+    }
+    if (rankingSlotTable.isOutbid(trade.getRanking(), trade.getAmount())) {
+      return Mono.error(rejectBuy(trade, rsEventId, TradeOutcome.OUTBID, "amount is not enough"));
+    }
+    return buy(trade, rsEventId, 0);
+  }
+
+  private Mono<Void> buy(Trade trade, int rsEventId, int attempt) {
+    if (attempt == RsService.BUY_ATTEMPTS) {
+      return Mono.error(rejectBuy(trade, rsEventId, TradeOutcome.CONTENDED, "ranking is being traded, please retry"));
+    }
+    return transactionalOperator
+        .transactional(tryBuy(trade, rsEventId))
+        // the unique ranking index rejected a concurrent first bid
+        .onErrorReturn(
+            e -> e instanceof DataIntegrityViolationException && RsService.isRankingTaken((DataIntegrityViolationException) e),
+            LOST)
+        .flatMap(
+            displaced -> {
+              if (displaced == LOST) {
+                return buy(trade, rsEventId, attempt + 1);
+              }
+              leaderboard.setSlot(trade.getRanking(), rsEventId);
+              rankingSlotTable.put(trade.getRanking(), trade.getAmount(), rsEventId);
+              if (displaced != NOTHING_DISPLACED) {
+                leaderboard.remove(displaced);
+              }
+              tradeLedger.record(trade, rsEventId, TradeOutcome.ACCEPTED);
+              return Mono.empty();
+            });
+  }
+
+  // the id of the event that lost the ranking, NOTHING_DISPLACED, or LOST when another bid won the race
+  private Mono<Integer> tryBuy(Trade trade, int rsEventId) {
+    return databaseClient
+        .execute("select id from rs_event where id = :id")
+        .bind("id", rsEventId)
+        .fetch()
+        .first()
+        .switchIfEmpty(
+            Mono.defer(
+                () -> {
+                  tradeLedger.record(trade, rsEventId, TradeOutcome.UNKNOWN_EVENT);
+                  return Mono.error(new RuntimeException());
+                }))
+        .then(
+            databaseClient
+                .execute("select id, amount, version, rs_event_dto_id from trade where ranking = :ranking")
+                .bind("ranking", trade.getRanking())
+                .map((row, metadata) -> new CurrentTrade(row.get(0, Integer.class), row.get(1, Double.class),
+                    row.get(2, Long.class), row.get(3, Integer.class)))
+                .first()
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty()))
+        .flatMap(
+            current -> {
+              if (!current.isPresent()) {
+                return nextValue("hibernate_sequence", 1)
+                    .flatMap(
+                        id ->
+                            databaseClient
+                                .execute("insert into trade (id, amount, ranking, version, rs_event_dto_id) "
+                                    + "values (:id, :amount, :ranking, 0, :rsEventId)")
+                                .bind("id", id.intValue())
+                                .bind("amount", trade.getAmount())
+                                .bind("ranking", trade.getRanking())
+                                .bind("rsEventId", rsEventId)
+                                .fetch()
+                                .rowsUpdated())
+                    .thenReturn(NOTHING_DISPLACED);
+              }
+              CurrentTrade found = current.get();
+              if (trade.getAmount() <= found.amount) {
+                return Mono.error(rejectBuy(trade, rsEventId, TradeOutcome.OUTBID, "amount is not enough"));
+              }
+              return databaseClient
+                  .execute("update trade set amount = :amount, rs_event_dto_id = :rsEventId, version = version + 1 "
+                      + "where id = :id and version = :version and amount < :amount")
+                  .bind("amount", trade.getAmount())
+                  .bind("rsEventId", rsEventId)
+                  .bind("id", found.id)
+                  .bind("version", found.version)
+                  .fetch()
+                  .rowsUpdated()
+                  .flatMap(
+                      rows -> {
+                        if (rows == 0) {
+                          return Mono.just(LOST);
+                        }
+                        if (found.rsEventId == null || found.rsEventId == rsEventId) {
+                          return Mono.just(NOTHING_DISPLACED);
+                        }
+                        // the displaced event's votes reference it and go first
+                        return databaseClient
+                            .execute("delete from vote where rs_event_id = :id")
+                            .bind("id", found.rsEventId)
+                            .fetch()
+                            .rowsUpdated()
+                            .then(databaseClient
+                                .execute("delete from rs_event where id = :id")
+                                .bind("id", found.rsEventId)
+                                .fetch()
+                                .rowsUpdated())
+                            .then(logChange(ChangeKind.EVENT_DELETED, found.rsEventId, 0))
+                            .thenReturn(found.rsEventId);
+                      });
+            })
+        .flatMap(
+            displaced ->
+                displaced == LOST
+                    ? Mono.just(LOST)
+                    : databaseClient
+                        .execute("update rs_event set ranking = :ranking, version = version + 1, "
+                            + "modified_at = CURRENT_TIMESTAMP where id = :id")
+                        .bind("ranking", trade.getRanking())
+                        .bind("id", rsEventId)
+                        .fetch()
+                        .rowsUpdated()
+                        .then(logChange(ChangeKind.RANKING, trade.getRanking(), 0))
+                        .thenReturn(displaced));
+  }
+
+  private Mono<Void> takeFromBudget(int userId, int voteNum) {
+    if (voteNum == 0) {
+      // MySQL counts changed rows, not matched ones, so an update by 0 would look like a miss
+      return expectRow(
+          databaseClient.execute("select id from user where id = :id").bind("id", userId).fetch().first().map(row -> 1)
+              .defaultIfEmpty(0));
+    }
+    return expectRow(
+        databaseClient
+            .execute("update user set vote_num = vote_num - :voteNum where id = :id and vote_num >= :voteNum")
+            .bind("voteNum", voteNum)
+            .bind("id", userId)
+            .fetch()
+            .rowsUpdated());
+  }
+
+  // the row ChangeLog would write through JPA, in the same reactive transaction
+  private Mono<Void> logChange(ChangeKind kind, int targetId, int delta) {
+    if (!changeLog.isEnabled()) {
+      return Mono.empty();
+    }
+    return databaseClient
+        .execute("insert into change_log (kind, target_id, delta, node, created_at) "
+            + "values (:kind, :targetId, :delta, :node, :createdAt)")
+        .bind("kind", kind.name())
+        .bind("targetId", targetId)
+        .bind("delta", delta)
+        .bind("node", changeLog.node())
+        .bind("createdAt", LocalDateTime.now())
+        .fetch()
+        .rowsUpdated()
+        .then();
+  }
+
+  private static Mono<Void> expectRow(Mono<Integer> rows) {
+    return rows.flatMap(count -> count == 0 ? Mono.<Void>error(new RuntimeException()) : Mono.<Void>empty());
+  }
+
+  private Mono<Long> nextVoteId() {
+    synchronized (this) {
+      if (nextVoteId < voteIdLimit) {
+        return Mono.just(nextVoteId++);
+      }
+    }
+    // a racing caller may take a block too; the later one wins and the other's rest is skipped
+    return nextValue("vote_seq", VOTE_ID_BLOCK)
+        .map(
+            first -> {
+              synchronized (this) {
+                nextVoteId = first + 1;
+                voteIdLimit = first + VOTE_ID_BLOCK;
+              }
+              return first;
+            });
+  }
+
+  // the next value of a Hibernate sequence; with pooled-lo it is the first id of a block of increment
+  private Mono<Long> nextValue(String sequence, int increment) {
+    if (sequences) {
+      return databaseClient
+          .execute("select next value for " + sequence)
+          .map((row, metadata) -> row.get(0, Long.class))
+          .first();
+    }
+    return sequenceOperator.transactional(
+        databaseClient
+            .execute("update " + sequence + " set next_val = next_val + :increment")
+            .bind("increment", increment)
+            .fetch()
+            .rowsUpdated()
+            .then(
+                databaseClient
+                    .execute("select next_val - :increment from " + sequence)
+                    .bind("increment", increment)
+                    .map((row, metadata) -> row.get(0, Long.class))
+                    .first()));
+  }
+
+  private RequestNotValidException rejectBuy(Trade trade, int rsEventId, TradeOutcome outcome, String message) {
+    meterRegistry.counter(RsService.BUY_REJECTIONS, "reason", outcome.name().toLowerCase(Locale.ROOT)).increment();
+    tradeLedger.record(trade, rsEventId, outcome);
+    return new RequestNotValidException(message);
+  }
+
+  private static final class CurrentTrade {
+    final int id;
+    final double amount;
+    final long version;
+    final Integer rsEventId;
+
+    CurrentTrade(int id, double amount, long version, Integer rsEventId) {
+      this.id = id;
+      this.amount = amount;
+      this.version = version;
+      this.rsEventId = rsEventId;
+    }
+  }
+}
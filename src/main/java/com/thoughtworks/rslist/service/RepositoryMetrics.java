@@ -0,0 +1,54 @@
+package com.thoughtworks.rslist.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.stereotype.Component;
+
+/**
+ * Times every Spring Data repository call as {@code rslist.repository}, tagged with the
+ * repository, the method and the exception it threw, so the calls behind a slow endpoint can be
+ * counted and told apart. The statements they cause are counted by Hibernate's statistics.
+ */
+@Aspect
+@Component
+public class RepositoryMetrics {
+  static final String TIMER = "rslist.repository";
+
+  final MeterRegistry meterRegistry;
+
+  public RepositoryMetrics(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  @Around("execution(* org.springframework.data.repository.Repository+.*(..))")
+  public Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+    Timer.Sample sample = Timer.start(meterRegistry);
+    String exception = "none";
+    try {
+      return joinPoint.proceed();
+    } catch (Throwable e) {
+      exception = e.getClass().getSimpleName();
+      throw e;
+    } finally {
+      sample.stop(
+          Timer.builder(TIMER)
+              .tag("repository", repositoryName(joinPoint))
+              .tag("method", joinPoint.getSignature().getName())
+              .tag("exception", exception)
+              .publishPercentiles(0.5, 0.99, 0.999)
+              .register(meterRegistry));
+    }
+  }
+
+  // the target is the Spring Data proxy, whose first interface is the repository it implements
+  private static String repositoryName(ProceedingJoinPoint joinPoint) {
+    Class<?>[] interfaces = AopProxyUtils.proxiedUserInterfaces(joinPoint.getTarget());
+    return interfaces.length > 0
+        ? interfaces[0].getSimpleName()
+        : joinPoint.getSignature().getDeclaringType().getSimpleName();
+  }
+}
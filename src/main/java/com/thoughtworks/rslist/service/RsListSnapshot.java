@@ -0,0 +1,212 @@
+package com.thoughtworks.rslist.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thoughtworks.rslist.domain.RsEvent;
+import com.thoughtworks.rslist.exception.RequestNotValidException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The rs list encoded as JSON once per ranking change instead of once per request. The array is
+ * kept with the byte offset of every element, so a start/end range or a single position is cut out
+ * of it without touching Jackson. A full-list read after the {@link Leaderboard} changed rebuilds
+ * the snapshot, which costs what encoding that list costs anyway. A range or position read finds
+ * a stale snapshot and encodes just its entries from the leaderboard. It leaves the rebuild to a
+ * background thread, so steady voting never makes a small read pay for the whole list. The gzip
+ * copy is made on the first request that asks for it.
+ *
+ * <p>Only used while the ranking is served from memory; {@link DatabaseRanking} reads go through
+ * {@link RsService} as before.
+ */
+@Component
+public class RsListSnapshot {
+  private static final byte[] EMPTY_ARRAY = {'[', ']'};
+
+  final RsService rsService;
+  final Leaderboard leaderboard;
+  final Ranking ranking;
+  final ObjectMapper objectMapper;
+  final boolean gzip;
+
+  private final AtomicBoolean rebuildQueued = new AtomicBoolean();
+  private final ExecutorService rebuilder = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "rs-list-snapshot");
+    thread.setDaemon(true);
+    return thread;
+  });
+  private volatile Snapshot snapshot = new Snapshot(-1, EMPTY_ARRAY, new int[] {1});
+
+  public RsListSnapshot(RsService rsService, Leaderboard leaderboard, Ranking ranking, ObjectMapper objectMapper,
+                        @Value("${rslist.ranking.snapshot.gzip:true}") boolean gzip) {
+    this.rsService = rsService;
+    this.leaderboard = leaderboard;
+    this.ranking = ranking;
+    this.objectMapper = objectMapper;
+    this.gzip = gzip;
+  }
+
+  public boolean isEnabled() {
+    return ranking == leaderboard;
+  }
+
+  /** The whole list as a JSON array. The returned array is shared and must not be modified. */
+  public byte[] list() {
+    return current().json;
+  }
+
+  /** The whole list gzip-compressed, or null when pre-compression is switched off. */
+  public byte[] gzippedList() {
+    return gzip ? current().gzipped() : null;
+  }
+
+  /** JSON array of the events at positions start to end, both 1-based and inclusive. */
+  public byte[] range(int start, int end) {
+    Snapshot current = fresh();
+    if (current == null) {
+      return encode(rsService.getRsEventListBetween(start, end));
+    }
+    if (start < 1 || start > end || end > current.size()) {
+      throw new RequestNotValidException("invalid index");
+    }
+    int from = current.offsets[start - 1];
+    int to = current.offsets[end] - 1;
+    byte[] json = new byte[to - from + 2];
+    json[0] = '[';
+    System.arraycopy(current.json, from, json, 1, to - from);
+    json[json.length - 1] = ']';
+    return json;
+  }
+
+  /** JSON object of the event at the 1-based position. */
+  public byte[] get(int position) {
+    Snapshot current = fresh();
+    if (current == null) {
+      return encode(rsService.getRsEvent(position));
+    }
+    if (position < 1 || position > current.size()) {
+      throw new RequestNotValidException("invalid index");
+    }
+    return Arrays.copyOfRange(current.json, current.offsets[position - 1], current.offsets[position] - 1);
+  }
+
+  @PreDestroy
+  public void close() {
+    rebuilder.shutdownNow();
+  }
+
+  // the snapshot if it is up to date, otherwise null once a background rebuild is queued
+  private Snapshot fresh() {
+    Snapshot current = snapshot;
+    if (current.version == leaderboard.version()) {
+      return current;
+    }
+    if (rebuildQueued.compareAndSet(false, true)) {
+      try {
+        rebuilder.execute(() -> {
+          // cleared first, so a change during the rebuild queues another one
+          rebuildQueued.set(false);
+          current();
+        });
+      } catch (RejectedExecutionException e) {
+        rebuildQueued.set(false);
+      }
+    }
+    return null;
+  }
+
+  private byte[] encode(Object value) {
+    try {
+      return objectMapper.writeValueAsBytes(value);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("rs event is not serializable", e);
+    }
+  }
+
+  private Snapshot current() {
+    Snapshot current = snapshot;
+    if (current.version == leaderboard.version()) {
+      return current;
+    }
+    synchronized (this) {
+      current = snapshot;
+      long version = leaderboard.version();
+      if (current.version != version) {
+        // read the version first: if the list moves on meanwhile, the next read rebuilds again
+        current = build(version, rsService.getRsEventList());
+        snapshot = current;
+      }
+      return current;
+    }
+  }
+
+  private Snapshot build(long version, List<RsEvent> rsEvents) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(64 * (rsEvents.size() + 1));
+    // offsets[i] is where element i starts; the last entry points just past the final element
+    int[] offsets = new int[rsEvents.size() + 1];
+    out.write('[');
+    try {
+      for (int i = 0; i < rsEvents.size(); i++) {
+        if (i > 0) {
+          out.write(',');
+        }
+        offsets[i] = out.size();
+        out.write(objectMapper.writeValueAsBytes(rsEvents.get(i)));
+      }
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("rs event is not serializable", e);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    offsets[rsEvents.size()] = out.size() + 1;
+    out.write(']');
+    byte[] json = out.toByteArray();
+    return new Snapshot(version, json, offsets);
+  }
+
+  private static byte[] gzip(byte[] json) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4 + 32);
+    try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+      gzipOut.write(json);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return out.toByteArray();
+  }
+
+  private static final class Snapshot {
+    final long version;
+    final byte[] json;
+    final int[] offsets;
+    private byte[] gzipped;
+
+    Snapshot(long version, byte[] json, int[] offsets) {
+      this.version = version;
+      this.json = json;
+      this.offsets = offsets;
+    }
+
+    int size() {
+      return offsets.length - 1;
+    }
+
+    synchronized byte[] gzipped() {
+      if (gzipped == null) {
+        gzipped = gzip(json);
+      }
+      return gzipped;
+    }
+  }
+}
@@ -1,101 +1,317 @@
 package com.thoughtworks.rslist.service;
 
+import com.thoughtworks.rslist.domain.ChangeKind;
 import com.thoughtworks.rslist.domain.RsEvent;
 import com.thoughtworks.rslist.domain.Trade;
+import com.thoughtworks.rslist.domain.TradeOutcome;
 import com.thoughtworks.rslist.domain.Vote;
 import com.thoughtworks.rslist.dto.RsEventDto;
 import com.thoughtworks.rslist.dto.TradeDto;
-import com.thoughtworks.rslist.dto.UserDto;
 import com.thoughtworks.rslist.dto.VoteDto;
+import com.thoughtworks.rslist.exception.RequestNotValidException;
 import com.thoughtworks.rslist.repository.RsEventRepository;
 import com.thoughtworks.rslist.repository.TradeRepository;
 import com.thoughtworks.rslist.repository.UserRepository;
 import com.thoughtworks.rslist.repository.VoteRepository;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import javax.transaction.Transactional;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Locale;
+import java.util.Map;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 @Service
 public class RsService {
+  static final int BUY_ATTEMPTS = 3;
+  static final String TIMER = "rslist.service";
+  static final String BUY_REJECTIONS = "rslist.buy.rejections";
+
   final RsEventRepository rsEventRepository;
   final UserRepository userRepository;
   final VoteRepository voteRepository;
   final TradeRepository tradeRepository;
+  final Ranking ranking;
+  final Leaderboard leaderboard;
+  final VoteWriteBehind voteWriteBehind;
+  final TransactionTemplate transactionTemplate;
+  final RankingSlotTable rankingSlotTable;
+  final JournaledVotes journaledVotes;
+  final MeterRegistry meterRegistry;
+  final TradeLedger tradeLedger;
+  final ChangeLog changeLog;
 
-  public RsService(RsEventRepository rsEventRepository, UserRepository userRepository, VoteRepository voteRepository, TradeRepository tradeRepository) {
+  public RsService(RsEventRepository rsEventRepository, UserRepository userRepository, VoteRepository voteRepository, TradeRepository tradeRepository,
+                   Ranking ranking, Leaderboard leaderboard, VoteWriteBehind voteWriteBehind, TransactionTemplate transactionTemplate,
+                   RankingSlotTable rankingSlotTable, JournaledVotes journaledVotes, MeterRegistry meterRegistry,
+                   TradeLedger tradeLedger, ChangeLog changeLog) {
     this.rsEventRepository = rsEventRepository;
     this.userRepository = userRepository;
     this.voteRepository = voteRepository;
     this.tradeRepository = tradeRepository;
+    this.ranking = ranking;
+    this.leaderboard = leaderboard;
+    this.voteWriteBehind = voteWriteBehind;
+    this.transactionTemplate = transactionTemplate;
+    this.rankingSlotTable = rankingSlotTable;
+    this.journaledVotes = journaledVotes;
+    this.meterRegistry = meterRegistry;
+    this.tradeLedger = tradeLedger;
+    this.changeLog = changeLog;
+  }
+
+  @Timed(value = TIMER, percentiles = {0.5, 0.99, 0.999})
+  public List<RsEvent> getRsEventList() {
+    return toRsEvents(ranking.window(1, Integer.MAX_VALUE));
+  }
+
+  @Timed(value = TIMER, percentiles = {0.5, 0.99, 0.999})
+  public List<RsEvent> getRsEventListBetween(int start, int end) {
+    if (start < 1 || start > end) {
+      throw new RequestNotValidException("invalid index");
+    }
+    // the window is clipped to the list, so a short one means end is past it
+    List<Leaderboard.Entry> window = ranking.window(start, end);
+    if (window.size() < end - start + 1) {
+      throw new RequestNotValidException("invalid index");
+    }
+    return toRsEvents(window);
   }
 
+  @Timed(value = TIMER, percentiles = {0.5, 0.99, 0.999})
+  public RsEvent getRsEvent(int index) {
+    return ranking.get(index).map(this::toRsEvent).orElseThrow(() -> new RequestNotValidException("invalid index"));
+  }
+
+  @Transactional
+  public RsEventDto addRsEvent(RsEventDto rsEventDto) {
+    RsEventDto saved = rsEventRepository.save(rsEventDto);
+    changeLog.record(ChangeKind.EVENT_CREATED, saved.getId());
+    return saved;
+  }
+
+  @Timed(value = TIMER, percentiles = {0.5, 0.99, 0.999})
   public void vote(Vote vote, int rsEventId) {
-    Optional<RsEventDto> rsEventDto = rsEventRepository.findById(rsEventId);
-    Optional<UserDto> userDto = userRepository.findById(vote.getUserId());
-    if (!rsEventDto.isPresent()
-        || !userDto.isPresent()
-        || vote.getVoteNum() > userDto.get().getVoteNum()) {
+    // a journaled vote is acknowledged without a transaction or a connection
+    if (journaledVotes.isEnabled()) {
+      journaledVotes.append(vote, rsEventId);
+    } else {
+      transactionTemplate.executeWithoutResult(status -> applyVote(vote, rsEventId));
+    }
+  }
+
+  // one conditional update per row instead of load-modify-save, so concurrent votes can neither
+  // lose updates nor overdraw a user's budget
+  private void applyVote(Vote vote, int rsEventId) {
+    if (vote.getVoteNum() < 0 || userRepository.decreaseVoteNum(vote.getUserId(), vote.getVoteNum()) == 0) {
+      throw new RuntimeException();
+    }
+    boolean eventFound =
+        voteWriteBehind.isEnabled()
+            ? rsEventRepository.existsById(rsEventId)
+            : rsEventRepository.increaseVoteNum(rsEventId, vote.getVoteNum()) == 1;
+    if (!eventFound) {
       throw new RuntimeException();
     }
     VoteDto voteDto =
         VoteDto.builder()
-            .localDateTime(vote.getTime())
+            .localDateTime(timeOf(vote))
             .num(vote.getVoteNum())
-            .rsEvent(rsEventDto.get())
-            .user(userDto.get())
+            .rsEvent(rsEventRepository.getOne(rsEventId))
+            .user(userRepository.getOne(vote.getUserId()))
             .build();
     voteRepository.save(voteDto);
-    UserDto user = userDto.get();
-    user.setVoteNum(user.getVoteNum() - vote.getVoteNum());
-    userRepository.save(user);
-    RsEventDto rsEvent = rsEventDto.get();
-    rsEvent.setVoteNum(rsEvent.getVoteNum() + vote.getVoteNum());
-    rsEventRepository.save(rsEvent);
+    changeLog.recordVotes(Collections.singletonMap(rsEventId, vote.getVoteNum()), Collections.singleton(vote.getUserId()));
+    AfterCommit.run(
+        () -> {
+          if (voteWriteBehind.isEnabled()) {
+            voteWriteBehind.add(rsEventId, vote.getVoteNum());
+          }
+          leaderboard.addVotes(rsEventId, vote.getVoteNum());
+        });
+  }
+
+  /**
+   * Applies a batch of votes as one unit: the counts are summed per user and per event first, so
+   * each budget and each event row is updated once, and the votes are inserted as a JDBC batch.
+   */
+  @Timed(value = TIMER, percentiles = {0.5, 0.99, 0.999})
+  public void voteAll(List<Vote> votes) {
+    if (journaledVotes.isEnabled()) {
+      journaledVotes.appendAll(votes);
+    } else {
+      transactionTemplate.executeWithoutResult(status -> applyVotes(votes));
+    }
   }
 
-  @Transactional //https://www.cnblogs.com/alice-cj/p/10417097.html
+  private void applyVotes(List<Vote> votes) {
+    Map<Integer, Integer> votesByUser = new HashMap<>();
+    Map<Integer, Integer> votesByEvent = new HashMap<>();
+    try {
+      for (Vote vote : votes) {
+        if (vote.getVoteNum() < 0) {
+          throw new RequestNotValidException("invalid vote");
+        }
+        // a wrapped sum would turn into a negative cost and refill the budget
+        votesByUser.merge(vote.getUserId(), vote.getVoteNum(), Math::addExact);
+        votesByEvent.merge(vote.getRsEventId(), vote.getVoteNum(), Math::addExact);
+      }
+    } catch (ArithmeticException e) {
+      throw new RequestNotValidException("invalid vote");
+    }
+    votesByUser.forEach(
+        (userId, voteNum) -> {
+          if (userRepository.decreaseVoteNum(userId, voteNum) == 0) {
+            throw new RequestNotValidException("invalid vote");
+          }
+        });
+    if (voteWriteBehind.isEnabled()) {
+      if (rsEventRepository.countByIdIn(votesByEvent.keySet()) != votesByEvent.size()) {
+        throw new RequestNotValidException("invalid vote");
+      }
+    } else {
+      votesByEvent.forEach(
+          (rsEventId, voteNum) -> {
+            if (rsEventRepository.increaseVoteNum(rsEventId, voteNum) == 0) {
+              throw new RequestNotValidException("invalid vote");
+            }
+          });
+    }
+    voteRepository.saveAll(
+        votes.stream()
+            .map(
+                vote ->
+                    VoteDto.builder()
+                        .localDateTime(timeOf(vote))
+                        .num(vote.getVoteNum())
+                        .rsEvent(rsEventRepository.getOne(vote.getRsEventId()))
+                        .user(userRepository.getOne(vote.getUserId()))
+                        .build())
+            .collect(Collectors.toList()));
+    changeLog.recordVotes(votesByEvent, votesByUser.keySet());
+    AfterCommit.run(
+        () ->
+            votesByEvent.forEach(
+                (rsEventId, voteNum) -> {
+                  if (voteWriteBehind.isEnabled()) {
+                    voteWriteBehind.add(rsEventId, voteNum);
+                  }
+                  leaderboard.addVotes(rsEventId, voteNum);
+                }));
+  }
+
+  /**
+   * Buys a ranking with a compare-and-swap on the current trade of that ranking. A bid that loses
+   * the race is retried a bounded number of times; a bid that is not higher than the current price
+   * fails at once, from the slot table when it already knows that price. Every attempt ends up in
+   * the trade ledger with its outcome.
+   */
+  @Timed(value = TIMER, percentiles = {0.5, 0.99, 0.999})
   public void buy(Trade trade, int rsEventId) {
+    if (trade.getRanking() < 1) {
+      throw rejectBuy(trade, rsEventId, TradeOutcome.INVALID, "invalid ranking");
+    }
+    if (rankingSlotTable.isOutbid(trade.getRanking(), trade.getAmount())) {
+      throw rejectBuy(trade, rsEventId, TradeOutcome.OUTBID, "amount is not enough");
+    }
+    for (int attempt = 0; attempt < BUY_ATTEMPTS; attempt++) {
+      try {
+        // outcomes are recorded here, after the transaction, never inside it
+        TradeOutcome outcome = transactionTemplate.execute(status -> tryBuy(trade, rsEventId));
+        if (outcome == TradeOutcome.ACCEPTED) {
+          tradeLedger.record(trade, rsEventId, TradeOutcome.ACCEPTED);
+          return;
+        }
+        if (outcome == TradeOutcome.OUTBID) {
+          throw rejectBuy(trade, rsEventId, TradeOutcome.OUTBID, "amount is not enough");
+        }
+        if (outcome == TradeOutcome.UNKNOWN_EVENT) {
+          tradeLedger.record(trade, rsEventId, TradeOutcome.UNKNOWN_EVENT);
+          throw new RuntimeException();
+        }
+      } catch (OptimisticLockingFailureException e) {
+        // another bid changed the ranking between our read and write, read it again
+      } catch (DataIntegrityViolationException e) {
+        if (!isRankingTaken(e)) {
+          throw e;
+        }
+      }
+    }
+    throw rejectBuy(trade, rsEventId, TradeOutcome.CONTENDED, "ranking is being traded, please retry");
+  }
+
+  // only the unique ranking index means a concurrent first bid; any other violation is a real failure
+  static boolean isRankingTaken(DataIntegrityViolationException e) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause.getMessage() != null && cause.getMessage().toLowerCase(Locale.ROOT).contains(TradeDto.RANKING_CONSTRAINT)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private RequestNotValidException rejectBuy(Trade trade, int rsEventId, TradeOutcome outcome, String message) {
+    meterRegistry.counter(BUY_REJECTIONS, "reason", outcome.name().toLowerCase(Locale.ROOT)).increment();
+    tradeLedger.record(trade, rsEventId, outcome);
+    return new RequestNotValidException(message);
+  }
+
+  // ACCEPTED, OUTBID or UNKNOWN_EVENT, or CONTENDED when another bid won the race; only ACCEPTED writes
+  private TradeOutcome tryBuy(Trade trade, int rsEventId) {
     RsEventDto rsEventDto = rsEventRepository.findById(rsEventId).orElse(null);
     if (rsEventDto == null) {
-      throw new RuntimeException();
+      return TradeOutcome.UNKNOWN_EVENT;
     }
     TradeDto tradeDtoFound = tradeRepository.findTradeDtoByRanking(trade.getRanking()).orElse(null);
-    TradeDto tradeDtoInput = TradeDto.builder().amount(trade.getAmount()).ranking(trade.getRanking())
-        .rs_event_dto(rsEventDto).build();
     if (tradeDtoFound == null) {
-      tradeRepository.save(tradeDtoInput);
+      // the unique ranking index rejects a concurrent first bid at commit
+      tradeRepository.save(TradeDto.builder().amount(trade.getAmount()).ranking(trade.getRanking())
+          .rs_event_dto(rsEventDto).build());
     } else if (trade.getAmount() <= tradeDtoFound.getAmount()) {
-      throw new RuntimeException();
+      return TradeOutcome.OUTBID;
+    } else if (tradeRepository.replaceOwner(tradeDtoFound.getId(), tradeDtoFound.getVersion(), trade.getAmount(), rsEventDto) == 0) {
+      return TradeOutcome.CONTENDED;
     } else {
-      rsEventRepository.delete(tradeDtoFound.getRs_event_dto());
-      tradeRepository.delete(tradeDtoFound);
-      rsEventRepository.save(rsEventDto);
-      tradeRepository.save(tradeDtoInput);
+      if (tradeDtoFound.getRs_event_dto().getId() != rsEventId) {
+        voteRepository.deleteAllByRsEventId(tradeDtoFound.getRs_event_dto().getId());
+        rsEventRepository.delete(tradeDtoFound.getRs_event_dto());
+        changeLog.record(ChangeKind.EVENT_DELETED, tradeDtoFound.getRs_event_dto().getId());
+      }
+      AfterCommit.run(
+          () -> {
+            leaderboard.setSlot(trade.getRanking(), rsEventId);
+            rankingSlotTable.put(trade.getRanking(), trade.getAmount(), rsEventId);
+          });
     }
+    rsEventRepository.updateRanking(rsEventId, trade.getRanking());
+    changeLog.record(ChangeKind.RANKING, trade.getRanking());
+    return TradeOutcome.ACCEPTED;
   }
 
-  public List<RsEvent> sort(List<RsEvent> list) {
-    RsEvent[] rsEvents = new RsEvent[list.size()];
-    List<RsEvent> noRankingList = list.stream().filter(e -> e.getRanking() == 0)
-        .collect(Collectors.toList());
-    List<RsEvent> rankingList = list.stream().filter(e -> e.getRanking() != 0)
-        .collect(Collectors.toList());
-    noRankingList.sort((o1, o2) -> o1.getVoteNum() > o2.getVoteNum() ? -1 : 1);
-    rankingList.sort((o1, o2) -> o1.getRanking() > o2.getRanking() ? 1 : -1);
-
-    rankingList.stream().forEach(e -> rsEvents[e.getRanking() - 1] = e);
-    int j = 0;
-    for (int i = 0; i < list.size(); i++) {
-      if (rsEvents[i] == null) {
-        rsEvents[i] = noRankingList.get(j);
-        j++;
-      }
-    }
-    return Stream.of(rsEvents).collect(Collectors.toList());
+  // the vote history pages by time, so a vote without one is stamped when it is recorded
+  private static LocalDateTime timeOf(Vote vote) {
+    return vote.getTime() == null ? LocalDateTime.now() : vote.getTime();
+  }
+
+  private List<RsEvent> toRsEvents(List<Leaderboard.Entry> entries) {
+    return entries.stream().map(this::toRsEvent).collect(Collectors.toList());
+  }
+
+  private RsEvent toRsEvent(Leaderboard.Entry entry) {
+    return RsEvent.builder()
+        .eventName(entry.getEventName())
+        .keyword(entry.getKeyword())
+        .userId(entry.getId())
+        .voteNum(entry.getVoteNum())
+        .build();
   }
 }
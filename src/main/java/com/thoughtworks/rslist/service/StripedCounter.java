@@ -0,0 +1,62 @@
+package com.thoughtworks.rslist.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * LongAdder-style counter whose stripes can be drained without losing concurrent increments,
+ * which LongAdder.sumThenReset does not guarantee.
+ */
+class StripedCounter {
+  // one stripe per 128 bytes so neighbouring stripes do not share a cache line
+  private static final int PADDING = 16;
+
+  private final AtomicLongArray cells;
+  private final int mask;
+  private volatile boolean retired;
+
+  StripedCounter(int stripes) {
+    int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+    this.mask = size - 1;
+    this.cells = new AtomicLongArray(size * PADDING);
+  }
+
+  void add(long delta) {
+    int stripe = (int) mix(Thread.currentThread().getId()) & mask;
+    cells.addAndGet(stripe * PADDING, delta);
+  }
+
+  long sum() {
+    long sum = 0;
+    for (int i = 0; i < cells.length(); i += PADDING) {
+      sum += cells.get(i);
+    }
+    return sum;
+  }
+
+  /**
+   * Marks the counter as dropped by its owner. An add that lands after the owner's last drain sees
+   * the mark, because the owner sets it before that drain.
+   */
+  void retire() {
+    retired = true;
+  }
+
+  boolean isRetired() {
+    return retired;
+  }
+
+  /** Returns everything added since the last drain and resets to zero. */
+  long drain() {
+    long sum = 0;
+    for (int i = 0; i < cells.length(); i += PADDING) {
+      sum += cells.getAndSet(i, 0);
+    }
+    return sum;
+  }
+
+  private static long mix(long id) {
+    id ^= id >>> 33;
+    id *= 0xff51afd7ed558ccdL;
+    return id ^ (id >>> 33);
+  }
+}
@@ -0,0 +1,156 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.domain.Trade;
+import com.thoughtworks.rslist.domain.TradeOutcome;
+import com.thoughtworks.rslist.dto.TradeLedgerDto;
+import com.thoughtworks.rslist.dto.TradePriceRollupDto;
+import com.thoughtworks.rslist.repository.TradeLedgerRepository;
+import com.thoughtworks.rslist.repository.TradePriceRollupRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Append-only history of buy attempts ({@code rslist.trade.ledger.enabled}), accepted or not, with
+ * price rollups per ranking and time bucket. A buy only queues its entry; a scheduled flush inserts
+ * the queued entries as one batch and merges them into the rollups in the same transaction, so the
+ * buy path never waits on either table and price queries read the rollups, never the ledger.
+ *
+ * <p>Queued entries are lost if the process dies before a flush; {@code max-pending} bounds how
+ * many by flushing on the buying thread once it is reached.
+ */
+@Slf4j
+@Component
+public class TradeLedger {
+  final TradeLedgerRepository tradeLedgerRepository;
+  final TradePriceRollupRepository tradePriceRollupRepository;
+  final TransactionTemplate transactionTemplate;
+  final boolean enabled;
+  final long bucketSeconds;
+  final long maxPending;
+  final boolean flushOnShutdown;
+
+  private final Queue<TradeLedgerDto> queue = new ConcurrentLinkedQueue<>();
+  private final AtomicLong pending = new AtomicLong();
+
+  public TradeLedger(
+      TradeLedgerRepository tradeLedgerRepository,
+      TradePriceRollupRepository tradePriceRollupRepository,
+      TransactionTemplate transactionTemplate,
+      @Value("${rslist.trade.ledger.enabled:true}") boolean enabled,
+      @Value("${rslist.trade.ledger.bucket-seconds:3600}") long bucketSeconds,
+      @Value("${rslist.trade.ledger.max-pending:10000}") long maxPending,
+      @Value("${rslist.trade.ledger.flush-on-shutdown:true}") boolean flushOnShutdown) {
+    this.tradeLedgerRepository = tradeLedgerRepository;
+    this.tradePriceRollupRepository = tradePriceRollupRepository;
+    // a flush on a buying thread must neither join the buy's transaction nor go down with it
+    this.transactionTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+    this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    this.enabled = enabled;
+    this.bucketSeconds = bucketSeconds;
+    this.maxPending = maxPending;
+    this.flushOnShutdown = flushOnShutdown;
+  }
+
+  public void record(Trade trade, int rsEventId, TradeOutcome outcome) {
+    if (!enabled) {
+      return;
+    }
+    queue.add(TradeLedgerDto.builder().ranking(trade.getRanking()).rsEventId(rsEventId).amount(trade.getAmount())
+        .outcome(outcome).recordedAt(LocalDateTime.now()).build());
+    if (pending.incrementAndGet() >= maxPending) {
+      flush();
+    }
+  }
+
+  /** Start of the bucket the time falls in; buckets are aligned to the epoch in UTC. */
+  public LocalDateTime bucketOf(LocalDateTime time) {
+    long seconds = time.toEpochSecond(ZoneOffset.UTC);
+    return LocalDateTime.ofEpochSecond(seconds - Math.floorMod(seconds, bucketSeconds), 0, ZoneOffset.UTC);
+  }
+
+  @Scheduled(fixedDelayString = "${rslist.trade.ledger.flush-interval:1000}")
+  public synchronized void flush() {
+    List<TradeLedgerDto> batch = new ArrayList<>();
+    for (TradeLedgerDto entry = queue.poll(); entry != null; entry = queue.poll()) {
+      batch.add(entry);
+    }
+    if (batch.isEmpty()) {
+      return;
+    }
+    try {
+      transactionTemplate.executeWithoutResult(
+          status -> {
+            tradeLedgerRepository.saveAll(batch);
+            rollUp(batch);
+          });
+      pending.addAndGet(-batch.size());
+    } catch (RuntimeException e) {
+      log.warn("trade ledger flush failed, keeping {} entries for the next attempt", batch.size(), e);
+      // the failed insert may have handed out ids
+      batch.forEach(entry -> entry.setId(0));
+      queue.addAll(batch);
+    }
+  }
+
+  // one read of the rollups the batch touches and one write per rollup, however many entries fall in it
+  private void rollUp(List<TradeLedgerDto> batch) {
+    Set<Integer> rankings = new HashSet<>();
+    Set<LocalDateTime> buckets = new HashSet<>();
+    for (TradeLedgerDto entry : batch) {
+      rankings.add(entry.getRanking());
+      buckets.add(bucketOf(entry.getRecordedAt()));
+    }
+    Map<Integer, Map<LocalDateTime, TradePriceRollupDto>> rollups = new HashMap<>();
+    tradePriceRollupRepository.findAllByRankingInAndBucketIn(rankings, buckets).forEach(
+        rollup -> rollups.computeIfAbsent(rollup.getRanking(), ranking -> new HashMap<>()).put(rollup.getBucket(), rollup));
+    for (TradeLedgerDto entry : batch) {
+      LocalDateTime bucket = bucketOf(entry.getRecordedAt());
+      TradePriceRollupDto rollup =
+          rollups.computeIfAbsent(entry.getRanking(), ranking -> new HashMap<>())
+              .computeIfAbsent(bucket, key -> TradePriceRollupDto.builder().ranking(entry.getRanking()).bucket(key).build());
+      merge(rollup, entry);
+    }
+    tradePriceRollupRepository.saveAll(
+        rollups.values().stream().flatMap(byBucket -> byBucket.values().stream()).collect(Collectors.toList()));
+  }
+
+  private static void merge(TradePriceRollupDto rollup, TradeLedgerDto entry) {
+    rollup.setAttempts(rollup.getAttempts() + 1);
+    if (entry.getOutcome() != TradeOutcome.ACCEPTED) {
+      return;
+    }
+    double price = entry.getAmount();
+    rollup.setTrades(rollup.getTrades() + 1);
+    rollup.setMinPrice(rollup.getMinPrice() == null ? price : Math.min(rollup.getMinPrice(), price));
+    rollup.setMaxPrice(rollup.getMaxPrice() == null ? price : Math.max(rollup.getMaxPrice(), price));
+    if (rollup.getLastTradedAt() == null || !entry.getRecordedAt().isBefore(rollup.getLastTradedAt())) {
+      rollup.setLastPrice(price);
+      rollup.setLastTradedAt(entry.getRecordedAt());
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    if (enabled && flushOnShutdown) {
+      flush();
+    }
+  }
+}
@@ -0,0 +1,217 @@
+package com.thoughtworks.rslist.service;
+
+import lombok.Value;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of votes in memory-mapped segment files. A record is 24 bytes (crc, user id,
+ * event id, vote count, epoch millis) and is addressed by its position, counted from the first
+ * record ever written; a segment is named after the position of its first record. An append is a
+ * few stores into the page cache, which survives a crash of the process; with {@code sync} it is
+ * also forced to disk.
+ *
+ * <p>On open, the last segment is scanned up to the first record whose crc does not match, which
+ * is where appending continues. One writer at a time; reads may run concurrently with appends.
+ */
+class VoteJournal implements Closeable {
+  static final int RECORD_SIZE = 24;
+  private static final String SUFFIX = ".journal";
+
+  private final Path dir;
+  private final int recordsPerSegment;
+  private final boolean sync;
+  private final ConcurrentNavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+  private Segment current;
+  private volatile long end;
+
+  private VoteJournal(Path dir, int recordsPerSegment, boolean sync) {
+    this.dir = dir;
+    this.recordsPerSegment = recordsPerSegment;
+    this.sync = sync;
+  }
+
+  /** Opens the journal in dir; an empty journal starts at position startAt. */
+  static VoteJournal open(Path dir, int recordsPerSegment, boolean sync, long startAt) throws IOException {
+    Files.createDirectories(dir);
+    VoteJournal journal = new VoteJournal(dir, recordsPerSegment, sync);
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        long base = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+        journal.segments.put(base, Segment.map(file, base, 0));
+      }
+    }
+    if (journal.segments.isEmpty()) {
+      journal.current = journal.newSegment(startAt);
+      journal.end = startAt;
+    } else {
+      journal.current = journal.segments.lastEntry().getValue();
+      int count = 0;
+      while (count < journal.current.capacity && journal.current.read(count) != null) {
+        count++;
+      }
+      journal.end = journal.current.base + count;
+    }
+    return journal;
+  }
+
+  /** Deletes the segment files in dir, returning how many there were. */
+  static int delete(Path dir) throws IOException {
+    if (!Files.isDirectory(dir)) {
+      return 0;
+    }
+    int deleted = 0;
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+      for (Path file : files) {
+        Files.delete(file);
+        deleted++;
+      }
+    }
+    return deleted;
+  }
+
+  /** Position of the oldest record still kept. */
+  long start() {
+    return segments.firstKey();
+  }
+
+  /** Position the next record will get. */
+  long end() {
+    return end;
+  }
+
+  synchronized long append(int userId, int rsEventId, int voteNum, long time) throws IOException {
+    long position = end;
+    if (position - current.base == current.capacity) {
+      current = newSegment(position);
+    }
+    current.write((int) (position - current.base), userId, rsEventId, voteNum, time);
+    if (sync) {
+      current.buffer.force();
+    }
+    end = position + 1;
+    return position;
+  }
+
+  /** Up to max records from position from on, stopping at the end of the journal. */
+  List<Record> read(long from, int max) {
+    long to = Math.min(end, from + max);
+    List<Record> records = new ArrayList<>((int) Math.max(0, to - from));
+    for (long position = from; position < to; position++) {
+      Map.Entry<Long, Segment> entry = segments.floorEntry(position);
+      if (entry == null) {
+        throw new IllegalStateException("journal position " + position + " was already released");
+      }
+      Record record = entry.getValue().read((int) (position - entry.getKey()));
+      if (record == null) {
+        throw new IllegalStateException("journal record " + position + " is corrupt");
+      }
+      records.add(record);
+    }
+    return records;
+  }
+
+  /** Deletes the segments whose records all lie before position upTo. */
+  void release(long upTo) throws IOException {
+    for (Segment segment : segments.headMap(upTo, true).values()) {
+      if (segment != current && segment.base + segment.capacity <= upTo) {
+        segments.remove(segment.base);
+        segment.channel.close();
+        Files.deleteIfExists(segment.path);
+      }
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    for (Segment segment : segments.values()) {
+      segment.buffer.force();
+      segment.channel.close();
+    }
+    segments.clear();
+  }
+
+  private Segment newSegment(long base) throws IOException {
+    Segment segment = Segment.map(dir.resolve(String.format("%020d%s", base, SUFFIX)), base, recordsPerSegment);
+    segments.put(base, segment);
+    return segment;
+  }
+
+  @Value
+  static class Record {
+    long position;
+    int userId;
+    int rsEventId;
+    int voteNum;
+    long time;
+  }
+
+  private static final class Segment {
+    final Path path;
+    final long base;
+    final int capacity;
+    final FileChannel channel;
+    final MappedByteBuffer buffer;
+
+    private Segment(Path path, long base, FileChannel channel, MappedByteBuffer buffer) {
+      this.path = path;
+      this.base = base;
+      this.capacity = buffer.capacity() / RECORD_SIZE;
+      this.channel = channel;
+      this.buffer = buffer;
+    }
+
+    /** Maps an existing segment at its own size, or creates one of the given number of records. */
+    static Segment map(Path path, long base, int records) throws IOException {
+      FileChannel channel =
+          FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      long size = records > 0 ? (long) records * RECORD_SIZE : channel.size() - channel.size() % RECORD_SIZE;
+      return new Segment(path, base, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+    }
+
+    void write(int index, int userId, int rsEventId, int voteNum, long time) {
+      int offset = index * RECORD_SIZE;
+      buffer.putInt(offset + 4, userId);
+      buffer.putInt(offset + 8, rsEventId);
+      buffer.putInt(offset + 12, voteNum);
+      buffer.putLong(offset + 16, time);
+      // the crc goes last, a record is only valid once it is complete
+      buffer.putInt(offset, crc(offset));
+    }
+
+    /** The record at index, or null when it was never completely written. */
+    Record read(int index) {
+      int offset = index * RECORD_SIZE;
+      int userId = buffer.getInt(offset + 4);
+      if (userId == 0 || buffer.getInt(offset) != crc(offset)) {
+        return null;
+      }
+      return new Record(base + index, userId, buffer.getInt(offset + 8), buffer.getInt(offset + 12),
+          buffer.getLong(offset + 16));
+    }
+
+    private int crc(int offset) {
+      ByteBuffer payload = buffer.duplicate();
+      payload.limit(offset + RECORD_SIZE);
+      payload.position(offset + 4);
+      CRC32 crc = new CRC32();
+      crc.update(payload);
+      return (int) crc.getValue();
+    }
+  }
+}
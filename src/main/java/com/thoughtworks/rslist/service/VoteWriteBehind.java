@@ -0,0 +1,157 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind buffer for rs event vote counts ({@code rslist.vote.write-behind.enabled}). Votes
+ * add to per-event striped counters and a scheduled flush applies the summed deltas to
+ * RsEventDto.voteNum in one transaction, so a trending event no longer serializes every vote on
+ * its row lock. A counter that had nothing to flush is dropped, so events that stopped receiving
+ * votes do not keep their stripes.
+ *
+ * <p>Pending deltas are lost if the process dies before a flush; {@code max-pending} bounds how
+ * many votes can be at risk by flushing on the voting thread once it is reached.
+ */
+@Slf4j
+@Component
+public class VoteWriteBehind {
+  final RsEventRepository rsEventRepository;
+  final TransactionTemplate transactionTemplate;
+  final boolean enabled;
+  final int stripes;
+  final long maxPending;
+  final boolean flushOnShutdown;
+
+  private final ConcurrentMap<Integer, StripedCounter> counters = new ConcurrentHashMap<>();
+  private final LongAdder pending = new LongAdder();
+
+  public VoteWriteBehind(
+      RsEventRepository rsEventRepository,
+      TransactionTemplate transactionTemplate,
+      @Value("${rslist.vote.write-behind.enabled:false}") boolean enabled,
+      @Value("${rslist.vote.write-behind.stripes:16}") int stripes,
+      @Value("${rslist.vote.write-behind.max-pending:100000}") long maxPending,
+      @Value("${rslist.vote.write-behind.flush-on-shutdown:true}") boolean flushOnShutdown) {
+    this.rsEventRepository = rsEventRepository;
+    // add() runs after a vote's commit and may flush there; joining that finished transaction
+    // would leave the update without one
+    this.transactionTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+    this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    this.enabled = enabled;
+    this.stripes = stripes;
+    this.maxPending = maxPending;
+    this.flushOnShutdown = flushOnShutdown;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void add(int rsEventId, int voteNum) {
+    addToCounter(rsEventId, voteNum);
+    pending.add(voteNum);
+    if (pending.sum() >= maxPending) {
+      flush();
+    }
+  }
+
+  private void addToCounter(int rsEventId, long voteNum) {
+    StripedCounter counter = counters.computeIfAbsent(rsEventId, id -> new StripedCounter(stripes));
+    counter.add(voteNum);
+    if (counter.isRetired()) {
+      // the flush dropped the counter meanwhile and may have drained before this add; whatever
+      // neither drain took is moved to the event's new counter
+      long missed = counter.drain();
+      if (missed != 0) {
+        addToCounter(rsEventId, missed);
+      }
+    }
+  }
+
+  /** Votes buffered for the event and not yet written to its row. */
+  public long pending(int rsEventId) {
+    StripedCounter counter = counters.get(rsEventId);
+    return counter == null ? 0 : counter.sum();
+  }
+
+  int counterCount() {
+    return counters.size();
+  }
+
+  @Scheduled(fixedDelayString = "${rslist.vote.write-behind.flush-interval:1000}")
+  public synchronized void flush() {
+    Map<Integer, Long> deltas = new HashMap<>();
+    counters.forEach(
+        (id, counter) -> {
+          long delta = counter.drain();
+          if (delta != 0) {
+            deltas.put(id, delta);
+          } else if (counters.remove(id, counter)) {
+            counter.retire();
+            long late = counter.drain();
+            if (late != 0) {
+              deltas.put(id, late);
+            }
+          }
+        });
+    if (deltas.isEmpty()) {
+      return;
+    }
+    long drained = deltas.values().stream().mapToLong(Long::longValue).sum();
+    try {
+      transactionTemplate.execute(
+          status -> {
+            deltas.forEach(this::increaseVoteNum);
+            return null;
+          });
+      pending.add(-drained);
+    } catch (RuntimeException e) {
+      // one failing row must not hold back the others: each event is written on its own and only
+      // the failures are kept
+      log.warn("vote flush of {} events failed, writing them one by one", deltas.size(), e);
+      deltas.forEach(
+          (id, delta) -> {
+            try {
+              transactionTemplate.execute(
+                  status -> {
+                    increaseVoteNum(id, delta);
+                    return null;
+                  });
+              pending.add(-delta);
+            } catch (RuntimeException failed) {
+              log.warn("vote flush of event {} failed, keeping {} votes for the next attempt", id, delta, failed);
+              addToCounter(id, delta);
+            }
+          });
+    }
+  }
+
+  // the update takes an int, so a larger backlog for one event is written in several parts
+  private void increaseVoteNum(int rsEventId, long delta) {
+    for (long left = delta; left != 0; ) {
+      int part = (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, left));
+      rsEventRepository.increaseVoteNum(rsEventId, part);
+      left -= part;
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    if (enabled && flushOnShutdown) {
+      flush();
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package com.thoughtworks.rslist;
+
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.dto.UserDto;
+import com.thoughtworks.rslist.dto.VoteDto;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.UserRepository;
+import com.thoughtworks.rslist.repository.VoteRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.servlet.http.Cookie;
+import java.time.LocalDateTime;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=" + ReplicaRoutingTest.PRIMARY,
+    "spring.datasource.driver-class-name=org.h2.Driver",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "rslist.datasource.replicas=" + ReplicaRoutingTest.REPLICA})
+@AutoConfigureMockMvc
+class ReplicaRoutingTest {
+  static final String PRIMARY = "jdbc:h2:mem:primary;MODE=MySQL;DB_CLOSE_DELAY=-1";
+  static final String REPLICA = "jdbc:h2:mem:replica;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+  @Autowired MockMvc mockMvc;
+  @Autowired UserRepository userRepository;
+  @Autowired RsEventRepository rsEventRepository;
+  @Autowired VoteRepository voteRepository;
+  JdbcTemplate primary = new JdbcTemplate(new DriverManagerDataSource(PRIMARY, "sa", ""));
+  JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA, "sa", ""));
+  UserDto user;
+  RsEventDto rsEvent;
+
+  @BeforeEach
+  void setUp() {
+    voteRepository.deleteAll();
+    rsEventRepository.deleteAll();
+    userRepository.deleteAll();
+    user = userRepository.save(UserDto.builder().userName("idolice").age(19).email("a@b.com").gender("female")
+        .phone("18888888888").voteNum(10).build());
+    rsEvent = rsEventRepository.save(RsEventDto.builder().user(user).eventName("event name").keyword("keyword")
+        .voteNum(0).build());
+    voteRepository.save(VoteDto.builder().user(user).rsEvent(rsEvent).localDateTime(LocalDateTime.now()).num(1).build());
+
+    // the replica is a copy of the primary that has not caught up with its votes yet
+    replica.execute("DROP ALL OBJECTS");
+    primary.queryForList("SCRIPT", String.class).stream()
+        .filter(statement -> !statement.startsWith("--"))
+        .forEach(replica::execute);
+    replica.update("DELETE FROM vote");
+  }
+
+  @Test
+  public void shouldReadFromReplicaUntilClientWrites() throws Exception {
+    mockMvc.perform(get("/voteRecords").param("userId", String.valueOf(user.getId())))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.votes", hasSize(0)));
+
+    Cookie primaryUntil = mockMvc.perform(post("/rs/vote/{id}", rsEvent.getId())
+            .content(String.format("{\"userId\":%d,\"time\":\"%s\",\"voteNum\":2}", user.getId(), LocalDateTime.now()))
+            .contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andReturn().getResponse().getCookie(ReplicaStickinessFilter.COOKIE);
+    assertNotNull(primaryUntil);
+    assertEquals(primary.queryForObject("SELECT COUNT(*) FROM vote", Integer.class), 2);
+    assertEquals(replica.queryForObject("SELECT COUNT(*) FROM vote", Integer.class), 0);
+
+    mockMvc.perform(get("/voteRecords").param("userId", String.valueOf(user.getId())).cookie(primaryUntil))
+        .andExpect(jsonPath("$.votes", hasSize(2)));
+    mockMvc.perform(get("/voteRecords").param("userId", String.valueOf(user.getId())))
+        .andExpect(jsonPath("$.votes", hasSize(0)));
+  }
+}
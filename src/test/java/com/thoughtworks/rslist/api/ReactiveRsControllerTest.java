@@ -0,0 +1,123 @@
+package com.thoughtworks.rslist.api;
+
+import com.thoughtworks.rslist.domain.Trade;
+import com.thoughtworks.rslist.domain.Vote;
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.dto.UserDto;
+import com.thoughtworks.rslist.dto.VoteDto;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.TradeRepository;
+import com.thoughtworks.rslist.repository.UserRepository;
+import com.thoughtworks.rslist.repository.VoteRepository;
+import com.thoughtworks.rslist.service.Leaderboard;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("reactive")
+class ReactiveRsControllerTest {
+  @Autowired WebTestClient webTestClient;
+  @Autowired UserRepository userRepository;
+  @Autowired RsEventRepository rsEventRepository;
+  @Autowired VoteRepository voteRepository;
+  @Autowired TradeRepository tradeRepository;
+  @Autowired Leaderboard leaderboard;
+  UserDto userDto;
+  RsEventDto first;
+  RsEventDto second;
+
+  @BeforeEach
+  void setUp() {
+    userDto = userRepository.save(UserDto.builder().userName("idolice").age(19).email("a@b.com").gender("female")
+        .phone("18888888888").voteNum(10).build());
+    first = rsEventRepository.save(RsEventDto.builder().user(userDto).eventName("first").keyword("keyword").build());
+    second = rsEventRepository.save(RsEventDto.builder().user(userDto).eventName("second").keyword("keyword").build());
+    voteRepository.save(VoteDto.builder().user(userDto).rsEvent(first).localDateTime(LocalDateTime.now()).num(0).build());
+  }
+
+  @AfterEach
+  void tearDown() {
+    tradeRepository.deleteAll();
+    voteRepository.deleteAll();
+    rsEventRepository.deleteAll();
+    userRepository.deleteAll();
+  }
+
+  @Test
+  void shouldServeListAndVoteWithoutServletStack() {
+    webTestClient.post().uri("/rs/vote/{id}", second.getId())
+        .bodyValue(Vote.builder().userId(userDto.getId()).voteNum(3).build())
+        .exchange()
+        .expectStatus().isOk();
+
+    webTestClient.get().uri("/rs/list").exchange()
+        .expectStatus().isOk()
+        .expectBody()
+        .jsonPath("$[0].eventName").isEqualTo("second")
+        .jsonPath("$[0].voteNum").isEqualTo(3)
+        .jsonPath("$[1].eventName").isEqualTo("first");
+    webTestClient.get().uri("/rs/1").exchange()
+        .expectStatus().isOk()
+        .expectBody().jsonPath("$.eventName").isEqualTo("second");
+    assertEquals(7, userRepository.findById(userDto.getId()).get().getVoteNum());
+    assertEquals(3, rsEventRepository.findById(second.getId()).get().getVoteNum());
+    // ids from the reactive writer do not collide with the ones JPA takes from vote_seq
+    List<Integer> ids = voteRepository.findAll().stream().map(VoteDto::getId).distinct().collect(Collectors.toList());
+    assertEquals(2, ids.size());
+  }
+
+  @Test
+  void shouldRejectVoteOverBudget() {
+    webTestClient.post().uri("/rs/vote/{id}", first.getId())
+        .bodyValue(Vote.builder().userId(userDto.getId()).voteNum(11).build())
+        .exchange()
+        .expectStatus().is5xxServerError();
+
+    assertEquals(10, userRepository.findById(userDto.getId()).get().getVoteNum());
+    assertEquals(1, voteRepository.count());
+  }
+
+  @Test
+  void shouldBuyRankingAndRejectLowerBid() {
+    webTestClient.post().uri("/rs/buy/{id}", first.getId())
+        .bodyValue(Trade.builder().ranking(1).amount(100).build())
+        .exchange()
+        .expectStatus().isOk();
+    webTestClient.post().uri("/rs/buy/{id}", second.getId())
+        .bodyValue(Trade.builder().ranking(1).amount(50).build())
+        .exchange()
+        .expectStatus().isBadRequest()
+        .expectBody().jsonPath("$.error").isEqualTo("amount is not enough");
+
+    assertEquals(1, tradeRepository.count());
+    assertEquals(1, rsEventRepository.findById(first.getId()).get().getRanking());
+    assertEquals(first.getId(), leaderboard.ownerOf(1).get());
+  }
+
+  @Test
+  void shouldBuyRankingFromEventThatHasVotes() {
+    webTestClient.post().uri("/rs/buy/{id}", first.getId())
+        .bodyValue(Trade.builder().ranking(1).amount(100).build())
+        .exchange()
+        .expectStatus().isOk();
+    webTestClient.post().uri("/rs/buy/{id}", second.getId())
+        .bodyValue(Trade.builder().ranking(1).amount(150).build())
+        .exchange()
+        .expectStatus().isOk();
+
+    assertEquals(false, rsEventRepository.findById(first.getId()).isPresent());
+    assertEquals(0, voteRepository.count());
+    assertEquals(second.getId(), leaderboard.ownerOf(1).get());
+  }
+}
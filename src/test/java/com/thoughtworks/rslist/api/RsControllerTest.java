@@ -1,5 +1,6 @@
 package com.thoughtworks.rslist.api;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.thoughtworks.rslist.domain.Trade;
 import com.thoughtworks.rslist.dto.RsEventDto;
@@ -19,6 +20,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -30,6 +32,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -101,6 +104,29 @@ class RsControllerTest {
     mockMvc.perform(get("/rs/2")).andExpect(jsonPath("$.keyword", is("无分类")));
   }
 
+  @Test
+  public void shouldExportEveryEventAsOneJsonLine() throws Exception {
+    UserDto save = userRepository.save(userDto);
+    RsEventDto first = rsEventRepository.save(
+        RsEventDto.builder().keyword("无分类").eventName("第一条事件").voteNum(3).user(save).build());
+    RsEventDto second = rsEventRepository.save(
+        RsEventDto.builder().keyword("无分类").eventName("第二条事件").voteNum(5).user(save).build());
+
+    String body = mockMvc.perform(get("/rs/export"))
+        .andExpect(status().isOk())
+        .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+        .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+    String[] lines = body.split("\n");
+    assertEquals(lines.length, 2);
+    JsonNode line = new ObjectMapper().readTree(lines[0]);
+    assertEquals(line.get("id").asInt(), first.getId());
+    assertEquals(line.get("eventName").asText(), "第一条事件");
+    assertEquals(line.get("voteNum").asInt(), 3);
+    assertEquals(line.get("userId").asInt(), save.getId());
+    assertEquals(new ObjectMapper().readTree(lines[1]).get("id").asInt(), second.getId());
+  }
+
   @Test
   public void shouldGetErrorWhenIndexInvalid() throws Exception {
     mockMvc
@@ -200,16 +226,79 @@ class RsControllerTest {
     assertEquals(voteDtos.get(0).getNum(), 1);
   }
 
+  @Test
+  public void shouldVoteInBatch() throws Exception {
+    UserDto save = userRepository.save(userDto);
+    RsEventDto first = rsEventRepository.save(
+        RsEventDto.builder().keyword("无分类").eventName("第一条事件").user(save).build());
+    RsEventDto second = rsEventRepository.save(
+        RsEventDto.builder().keyword("无分类").eventName("第二条事件").user(save).build());
+
+    String jsonValue =
+        String.format(
+            "[{\"userId\":%d,\"rsEventId\":%d,\"voteNum\":1},"
+                + "{\"userId\":%d,\"rsEventId\":%d,\"voteNum\":3},"
+                + "{\"userId\":%d,\"rsEventId\":%d,\"voteNum\":2}]",
+            save.getId(), first.getId(), save.getId(), second.getId(), save.getId(), second.getId());
+    mockMvc
+        .perform(post("/rs/votes").content(jsonValue).contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk());
+
+    assertEquals(userRepository.findById(save.getId()).get().getVoteNum(), 4);
+    assertEquals(rsEventRepository.findById(first.getId()).get().getVoteNum(), 1);
+    assertEquals(rsEventRepository.findById(second.getId()).get().getVoteNum(), 5);
+    assertEquals(voteRepository.findAll().size(), 3);
+    mockMvc.perform(get("/rs/1")).andExpect(jsonPath("$.eventName", is("第二条事件")));
+  }
+
+  @Test
+  public void shouldRejectWholeBatchWhenBudgetExceeded() throws Exception {
+    UserDto save = userRepository.save(userDto);
+    RsEventDto first = rsEventRepository.save(
+        RsEventDto.builder().keyword("无分类").eventName("第一条事件").user(save).build());
+
+    String jsonValue =
+        String.format(
+            "[{\"userId\":%d,\"rsEventId\":%d,\"voteNum\":6},"
+                + "{\"userId\":%d,\"rsEventId\":%d,\"voteNum\":5}]",
+            save.getId(), first.getId(), save.getId(), first.getId());
+    mockMvc
+        .perform(post("/rs/votes").content(jsonValue).contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isBadRequest());
+
+    assertEquals(userRepository.findById(save.getId()).get().getVoteNum(), 10);
+    assertEquals(voteRepository.findAll().size(), 0);
+  }
+
+  @Test
+  public void shouldRejectBatchWhoseSumOverflows() throws Exception {
+    UserDto save = userRepository.save(userDto);
+    RsEventDto first = rsEventRepository.save(
+        RsEventDto.builder().keyword("无分类").eventName("第一条事件").user(save).build());
+
+    String jsonValue =
+        String.format(
+            "[{\"userId\":%d,\"rsEventId\":%d,\"voteNum\":2147483647},"
+                + "{\"userId\":%d,\"rsEventId\":%d,\"voteNum\":2}]",
+            save.getId(), first.getId(), save.getId(), first.getId());
+    mockMvc
+        .perform(post("/rs/votes").content(jsonValue).contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isBadRequest());
+
+    assertEquals(userRepository.findById(save.getId()).get().getVoteNum(), 10);
+    assertEquals(rsEventRepository.findById(first.getId()).get().getVoteNum(), 0);
+  }
+
   @Test
   public void given_rs_event_id_then_buy_rs() throws Exception {
     UserDto save = userRepository.save(userDto);
     RsEventDto rsEventDto =
-        RsEventDto.builder().keyword("无分类").eventName("第一条事件").user(save).id(1).build();
-    rsEventRepository.save(rsEventDto);
+        RsEventDto.builder().keyword("无分类").eventName("第一条事件").user(save).build();
+    rsEventDto = rsEventRepository.save(rsEventDto);
     Trade trade = Trade.builder().amount(150).ranking(2).build();
     ObjectMapper objectMapper = new ObjectMapper();
     String tradeJson = objectMapper.writeValueAsString(trade);
-    mockMvc.perform(post("/rs/buy/2").contentType(MediaType.APPLICATION_JSON)
+    mockMvc.perform(post("/rs/buy/{id}", rsEventDto.getId()).contentType(MediaType.APPLICATION_JSON)
         .content(tradeJson))
         .andExpect(status().isOk());
 
@@ -218,4 +307,48 @@ class RsControllerTest {
     Assertions.assertEquals(tradeDtoList.get(0).getAmount(), 150);
     Assertions.assertEquals(tradeDtoList.get(0).getRanking(), 2);
   }
+
+  @Test
+  public void given_lower_amount_then_buy_rs_fail() throws Exception {
+    UserDto save = userRepository.save(userDto);
+    RsEventDto first = rsEventRepository.save(
+        RsEventDto.builder().keyword("无分类").eventName("第一条事件").user(save).build());
+    RsEventDto second = rsEventRepository.save(
+        RsEventDto.builder().keyword("无分类").eventName("第二条事件").user(save).build());
+    ObjectMapper objectMapper = new ObjectMapper();
+    mockMvc.perform(post("/rs/buy/{id}", first.getId()).contentType(MediaType.APPLICATION_JSON)
+        .content(objectMapper.writeValueAsString(Trade.builder().amount(150).ranking(1).build())))
+        .andExpect(status().isOk());
+
+    mockMvc.perform(post("/rs/buy/{id}", second.getId()).contentType(MediaType.APPLICATION_JSON)
+        .content(objectMapper.writeValueAsString(Trade.builder().amount(100).ranking(1).build())))
+        .andExpect(status().isBadRequest());
+
+    List<TradeDto> tradeDtoList = tradeRepository.findAll();
+    Assertions.assertEquals(tradeDtoList.size(), 1);
+    Assertions.assertEquals(tradeDtoList.get(0).getAmount(), 150);
+    mockMvc.perform(get("/rs/1")).andExpect(jsonPath("$.eventName", is("第一条事件")));
+  }
+
+  @Test
+  public void given_higher_amount_then_buy_rs_from_event_with_votes() throws Exception {
+    UserDto save = userRepository.save(userDto);
+    RsEventDto first = rsEventRepository.save(
+        RsEventDto.builder().keyword("无分类").eventName("第一条事件").user(save).build());
+    RsEventDto second = rsEventRepository.save(
+        RsEventDto.builder().keyword("无分类").eventName("第二条事件").user(save).build());
+    voteRepository.save(VoteDto.builder().user(save).rsEvent(first).localDateTime(LocalDateTime.now()).num(1).build());
+    ObjectMapper objectMapper = new ObjectMapper();
+    mockMvc.perform(post("/rs/buy/{id}", first.getId()).contentType(MediaType.APPLICATION_JSON)
+        .content(objectMapper.writeValueAsString(Trade.builder().amount(100).ranking(1).build())))
+        .andExpect(status().isOk());
+
+    mockMvc.perform(post("/rs/buy/{id}", second.getId()).contentType(MediaType.APPLICATION_JSON)
+        .content(objectMapper.writeValueAsString(Trade.builder().amount(150).ranking(1).build())))
+        .andExpect(status().isOk());
+
+    Assertions.assertFalse(rsEventRepository.findById(first.getId()).isPresent());
+    Assertions.assertEquals(voteRepository.findAll().size(), 0);
+    mockMvc.perform(get("/rs/1")).andExpect(jsonPath("$.eventName", is("第二条事件")));
+  }
 }
@@ -0,0 +1,97 @@
+package com.thoughtworks.rslist.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thoughtworks.rslist.domain.Trade;
+import com.thoughtworks.rslist.domain.TradeOutcome;
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.dto.TradeLedgerDto;
+import com.thoughtworks.rslist.dto.UserDto;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.TradeLedgerRepository;
+import com.thoughtworks.rslist.repository.TradePriceRollupRepository;
+import com.thoughtworks.rslist.repository.TradeRepository;
+import com.thoughtworks.rslist.repository.UserRepository;
+import com.thoughtworks.rslist.repository.VoteRepository;
+import com.thoughtworks.rslist.service.TradeLedger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class TradeControllerTest {
+  @Autowired MockMvc mockMvc;
+  @Autowired UserRepository userRepository;
+  @Autowired RsEventRepository rsEventRepository;
+  @Autowired VoteRepository voteRepository;
+  @Autowired TradeRepository tradeRepository;
+  @Autowired TradeLedgerRepository tradeLedgerRepository;
+  @Autowired TradePriceRollupRepository tradePriceRollupRepository;
+  @Autowired TradeLedger tradeLedger;
+  ObjectMapper objectMapper = new ObjectMapper();
+
+  @BeforeEach
+  void setUp() {
+    // attempts other tests left queued would otherwise land after the cleanup
+    tradeLedger.flush();
+    tradeLedgerRepository.deleteAll();
+    tradePriceRollupRepository.deleteAll();
+    tradeRepository.deleteAll();
+    voteRepository.deleteAll();
+    rsEventRepository.deleteAll();
+    userRepository.deleteAll();
+  }
+
+  @Test
+  public void shouldRecordEveryBuyAttemptAndServePriceRollups() throws Exception {
+    UserDto user = userRepository.save(UserDto.builder().voteNum(10).phone("18888888888").gender("female")
+        .email("a@b.com").age(19).userName("idolice").build());
+    RsEventDto first = rsEventRepository.save(RsEventDto.builder().keyword("keyword").eventName("first").user(user).build());
+    RsEventDto second = rsEventRepository.save(RsEventDto.builder().keyword("keyword").eventName("second").user(user).build());
+
+    buy(first.getId(), 100).andExpect(status().isOk());
+    buy(second.getId(), 50).andExpect(status().isBadRequest());
+    buy(second.getId(), 150).andExpect(status().isOk());
+    tradeLedger.flush();
+
+    assertEquals(tradeLedgerRepository.findAll().stream().map(TradeLedgerDto::getOutcome).sorted().collect(Collectors.toList()),
+        Arrays.asList(TradeOutcome.ACCEPTED, TradeOutcome.ACCEPTED, TradeOutcome.OUTBID));
+    mockMvc.perform(get("/trade/{ranking}/prices", 1))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$", hasSize(1)))
+        .andExpect(jsonPath("$[0].attempts", is(3)))
+        .andExpect(jsonPath("$[0].trades", is(2)))
+        .andExpect(jsonPath("$[0].minPrice", is(100.0)))
+        .andExpect(jsonPath("$[0].maxPrice", is(150.0)))
+        .andExpect(jsonPath("$[0].lastPrice", is(150.0)));
+    mockMvc.perform(get("/trade/{ranking}/prices", 2)).andExpect(jsonPath("$", hasSize(0)));
+  }
+
+  @Test
+  public void shouldRejectInvalidTimeRange() throws Exception {
+    mockMvc.perform(get("/trade/{ranking}/prices", 1).param("from", "2020-05-02T00:00:00").param("to", "2020-05-01T00:00:00"))
+        .andExpect(status().isBadRequest())
+        .andExpect(jsonPath("$.error", is("invalid time range")));
+  }
+
+  private ResultActions buy(int rsEventId, double amount) throws Exception {
+    return mockMvc.perform(post("/rs/buy/{id}", rsEventId).contentType(MediaType.APPLICATION_JSON)
+        .content(objectMapper.writeValueAsString(Trade.builder().amount(amount).ranking(1).build())));
+  }
+}
@@ -3,9 +3,15 @@ package com.thoughtworks.rslist.api;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.thoughtworks.rslist.domain.User;
 import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.dto.TradeDto;
 import com.thoughtworks.rslist.dto.UserDto;
+import com.thoughtworks.rslist.dto.VoteDto;
 import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.TradeRepository;
 import com.thoughtworks.rslist.repository.UserRepository;
+import com.thoughtworks.rslist.repository.VoteRepository;
+import com.thoughtworks.rslist.service.Leaderboard;
+import com.thoughtworks.rslist.service.RankingSlotTable;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,9 +20,12 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -28,10 +37,16 @@ class UserControllerTest {
   ObjectMapper objectMapper;
   @Autowired UserRepository userRepository;
   @Autowired RsEventRepository rsEventRepository;
+  @Autowired VoteRepository voteRepository;
+  @Autowired TradeRepository tradeRepository;
+  @Autowired Leaderboard leaderboard;
+  @Autowired RankingSlotTable rankingSlotTable;
 
   @BeforeEach
   void setUp() {
     objectMapper = new ObjectMapper();
+    tradeRepository.deleteAll();
+    voteRepository.deleteAll();
     rsEventRepository.deleteAll();
     userRepository.deleteAll();
   }
@@ -124,4 +139,35 @@ class UserControllerTest {
     assertEquals(userRepository.findAll().size(), 0);
     assertEquals(rsEventRepository.findAll().size(), 0);
   }
+
+  @Test
+  public void shouldDeleteUserWithVotesAndTradesOnItsEvents() throws Exception {
+    UserDto deleted = userRepository.save(user("idolice"));
+    UserDto other = userRepository.save(user("other"));
+    RsEventDto owned = rsEventRepository.save(
+        RsEventDto.builder().keyword("keyword").eventName("owned").user(deleted).voteNum(2).ranking(1).build());
+    RsEventDto kept = rsEventRepository.save(
+        RsEventDto.builder().keyword("keyword").eventName("kept").user(other).voteNum(5).build());
+    tradeRepository.save(TradeDto.builder().ranking(1).amount(100).rs_event_dto(owned).build());
+    voteRepository.save(VoteDto.builder().user(other).rsEvent(owned).num(2).localDateTime(LocalDateTime.now()).build());
+    voteRepository.save(VoteDto.builder().user(deleted).rsEvent(kept).num(3).localDateTime(LocalDateTime.now()).build());
+    voteRepository.save(VoteDto.builder().user(other).rsEvent(kept).num(2).localDateTime(LocalDateTime.now()).build());
+
+    mockMvc.perform(delete("/user/{id}", deleted.getId())).andExpect(status().isOk());
+
+    assertEquals(userRepository.findAll().size(), 1);
+    assertEquals(rsEventRepository.findAll().size(), 1);
+    assertEquals(tradeRepository.findAll().size(), 0);
+    assertEquals(voteRepository.findAll().size(), 1);
+    assertEquals(rsEventRepository.findById(kept.getId()).get().getVoteNum(), 2);
+    assertFalse(leaderboard.find(owned.getId()).isPresent());
+    assertFalse(leaderboard.ownerOf(1).isPresent());
+    assertEquals(leaderboard.find(kept.getId()).get().getVoteNum(), 2);
+    assertNull(rankingSlotTable.get(1));
+  }
+
+  private static UserDto user(String userName) {
+    return UserDto.builder().voteNum(10).phone("18888888888").gender("female").email("a@b.com").age(19)
+        .userName(userName).build();
+  }
 }
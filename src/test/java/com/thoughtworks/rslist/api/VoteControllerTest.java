@@ -1,5 +1,6 @@
 package com.thoughtworks.rslist.api;
 
+import com.jayway.jsonpath.JsonPath;
 import com.thoughtworks.rslist.dto.RsEventDto;
 import com.thoughtworks.rslist.dto.UserDto;
 import com.thoughtworks.rslist.dto.VoteDto;
@@ -13,13 +14,16 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.time.LocalDateTime;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
 @AutoConfigureMockMvc
@@ -107,4 +111,41 @@ class VoteControllerTest {
 
 
     }
+
+    @Test
+    public void shouldPageVoteRecordsByCursor() throws Exception {
+      RsEventDto otherEvent = rsEventRepository.save(RsEventDto.builder().user(userDto).eventName("other event")
+              .keyword("keyword").voteNum(0).build());
+      // one shared time, after the vote made in setUp, so the id breaks the ties
+      LocalDateTime time = LocalDateTime.now().plusDays(1);
+      for (int num = 1; num <= 4; num++) {
+        voteRepository.save(VoteDto.builder().user(userDto).rsEvent(num % 2 == 0 ? otherEvent : rsEventDto)
+                .localDateTime(time).num(num).build());
+      }
+
+      MvcResult first = mockMvc.perform(get("/voteRecords").param("userId", String.valueOf(userDto.getId()))
+              .param("size", "3"))
+              .andExpect(jsonPath("$.votes", hasSize(3)))
+              .andExpect(jsonPath("$.votes[1].voteNum", is(1)))
+              .andExpect(jsonPath("$.votes[2].rsEventId", is(otherEvent.getId())))
+              .andReturn();
+      String next = JsonPath.read(first.getResponse().getContentAsString(), "$.next");
+
+      mockMvc.perform(get("/voteRecords").param("userId", String.valueOf(userDto.getId()))
+              .param("size", "3").param("after", next))
+              .andExpect(jsonPath("$.votes", hasSize(2)))
+              .andExpect(jsonPath("$.votes[0].voteNum", is(3)))
+              .andExpect(jsonPath("$.votes[1].voteNum", is(4)))
+              .andExpect(jsonPath("$.next", nullValue()));
+
+      mockMvc.perform(get("/voteRecords").param("userId", String.valueOf(userDto.getId()))
+              .param("rsEventId", String.valueOf(otherEvent.getId())))
+              .andExpect(jsonPath("$.votes", hasSize(2)))
+              .andExpect(jsonPath("$.votes[0].voteNum", is(2)))
+              .andExpect(jsonPath("$.next", nullValue()));
+
+      mockMvc.perform(get("/voteRecords").param("userId", String.valueOf(userDto.getId())).param("after", "x"))
+              .andExpect(status().isBadRequest())
+              .andExpect(jsonPath("$.error", is("invalid cursor")));
+    }
 }
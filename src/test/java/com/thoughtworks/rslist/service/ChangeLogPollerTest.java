@@ -0,0 +1,138 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.domain.ChangeKind;
+import com.thoughtworks.rslist.dto.ChangeLogDto;
+import com.thoughtworks.rslist.dto.RsEventSummary;
+import com.thoughtworks.rslist.dto.TradeSlot;
+import com.thoughtworks.rslist.repository.ChangeLogRepository;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.TradeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+class ChangeLogPollerTest {
+  @Mock ChangeLogRepository changeLogRepository;
+  @Mock RsEventRepository rsEventRepository;
+  @Mock TradeRepository tradeRepository;
+  @Mock JournaledVotes journaledVotes;
+  Leaderboard leaderboard;
+  RankingSlotTable rankingSlotTable;
+  ChangeLog changeLog;
+
+  @BeforeEach
+  void setUp() {
+    initMocks(this);
+    leaderboard = new Leaderboard();
+    leaderboard.put(Leaderboard.Entry.builder().id(1).eventName("first").keyword("keyword").voteNum(2).build());
+    leaderboard.put(Leaderboard.Entry.builder().id(2).eventName("second").keyword("keyword").voteNum(0).build());
+    rankingSlotTable = new RankingSlotTable();
+    changeLog = new ChangeLog(changeLogRepository, true, "this");
+  }
+
+  @Test
+  void shouldApplyChangesOfOtherNodesOnly() {
+    ChangeLogPoller poller = poller(10000);
+    poller.start();
+    when(changeLogRepository.findAllByIdGreaterThanOrderById(eq(0L), any())).thenReturn(Arrays.asList(
+        row(1, ChangeKind.VOTES, 1, 3, "other"),
+        row(2, ChangeKind.VOTES, 1, 5, "this"),
+        row(3, ChangeKind.USER, 7, 0, "other"),
+        row(4, ChangeKind.EVENT_CREATED, 9, 0, "other"),
+        row(5, ChangeKind.RANKING, 1, 0, "other")));
+    RsEventSummary created = summary(9);
+    TradeSlot bought = slot(1, 100, 2);
+    when(rsEventRepository.findAllProjectedByIdIn(Collections.singleton(9))).thenReturn(Collections.singletonList(created));
+    when(tradeRepository.findAllSlotsByRankingIn(Collections.singleton(1))).thenReturn(Collections.singletonList(bought));
+
+    poller.poll();
+
+    assertEquals(leaderboard.find(1).get().getVoteNum(), 5);
+    // the new event's votes come as rows of their own, not with the event
+    assertEquals(leaderboard.find(9).get().getVoteNum(), 0);
+    assertEquals(leaderboard.ownerOf(1).get(), 2);
+    assertEquals(rankingSlotTable.get(1).getRsEventId(), 2);
+    verify(journaledVotes).forgetBudget(7);
+  }
+
+  @Test
+  void shouldApplyRowThatCommitsAfterLaterIds() {
+    ChangeLogPoller poller = poller(10000);
+    poller.start();
+    when(changeLogRepository.findAllByIdGreaterThanOrderById(eq(0L), any())).thenReturn(Arrays.asList(
+        row(1, ChangeKind.VOTES, 1, 1, "other"), row(3, ChangeKind.VOTES, 1, 1, "other")));
+    poller.poll();
+    assertEquals(leaderboard.find(1).get().getVoteNum(), 4);
+
+    when(changeLogRepository.findAllByIdIn(Collections.singleton(2L)))
+        .thenReturn(Collections.singletonList(row(2, ChangeKind.VOTES, 1, 10, "other")));
+    poller.poll();
+    poller.poll();
+
+    assertEquals(leaderboard.find(1).get().getVoteNum(), 14);
+    verify(changeLogRepository, times(1)).findAllByIdIn(anyCollection());
+    verify(changeLogRepository, times(2)).findAllByIdGreaterThanOrderById(eq(3L), any());
+  }
+
+  @Test
+  void shouldStopWaitingForGapAfterTimeout() throws InterruptedException {
+    ChangeLogPoller poller = poller(0);
+    poller.start();
+    when(changeLogRepository.findAllByIdGreaterThanOrderById(eq(0L), any()))
+        .thenReturn(Collections.singletonList(row(2, ChangeKind.VOTES, 1, 1, "other")));
+    poller.poll();
+    Thread.sleep(5);
+    poller.poll();
+    poller.poll();
+
+    verify(changeLogRepository, times(1)).findAllByIdIn(anyCollection());
+  }
+
+  @Test
+  void shouldNotPollBeforeLeaderboardIsLoaded() {
+    poller(10000).poll();
+
+    verify(changeLogRepository, never()).findAllByIdGreaterThanOrderById(anyLong(), any());
+  }
+
+  private ChangeLogPoller poller(long gapTimeout) {
+    return new ChangeLogPoller(changeLog, changeLogRepository, rsEventRepository, tradeRepository, leaderboard,
+        rankingSlotTable, journaledVotes, 500, gapTimeout, 1000, 3600000);
+  }
+
+  private static ChangeLogDto row(long id, ChangeKind kind, int targetId, int delta, String node) {
+    return ChangeLogDto.builder().id(id).kind(kind).targetId(targetId).delta(delta).node(node).build();
+  }
+
+  private static RsEventSummary summary(int id) {
+    RsEventSummary summary = mock(RsEventSummary.class);
+    when(summary.getId()).thenReturn(id);
+    when(summary.getEventName()).thenReturn("event " + id);
+    when(summary.getKeyword()).thenReturn("keyword");
+    when(summary.getVoteNum()).thenReturn(7);
+    return summary;
+  }
+
+  private static TradeSlot slot(int ranking, double amount, int rsEventId) {
+    TradeSlot slot = mock(TradeSlot.class);
+    when(slot.getRanking()).thenReturn(ranking);
+    when(slot.getAmount()).thenReturn(amount);
+    when(slot.getRsEventId()).thenReturn(rsEventId);
+    return slot;
+  }
+}
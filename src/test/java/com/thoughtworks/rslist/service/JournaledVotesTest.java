@@ -0,0 +1,129 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.domain.Vote;
+import com.thoughtworks.rslist.dto.UserDto;
+import com.thoughtworks.rslist.dto.VoteJournalCheckpointDto;
+import com.thoughtworks.rslist.exception.RequestNotValidException;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.UserRepository;
+import com.thoughtworks.rslist.repository.VoteJournalCheckpointRepository;
+import com.thoughtworks.rslist.repository.VoteRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+class JournaledVotesTest {
+  @Mock UserRepository userRepository;
+  @Mock RsEventRepository rsEventRepository;
+  @Mock VoteRepository voteRepository;
+  @Mock VoteJournalCheckpointRepository checkpointRepository;
+  @Mock TransactionTemplate transactionTemplate;
+  @Mock ChangeLog changeLog;
+  JournaledVotes journaledVotes;
+
+  @BeforeEach
+  void setUp() {
+    initMocks(this);
+    Leaderboard leaderboard = new Leaderboard();
+    leaderboard.put(Leaderboard.Entry.builder().id(1).eventName("first").keyword("keyword").voteNum(0).build());
+    journaledVotes = new JournaledVotes(userRepository, rsEventRepository, voteRepository, checkpointRepository,
+        transactionTemplate, leaderboard, changeLog, false, "vote-journal", 16, 10, false, 100);
+  }
+
+  @Test
+  void shouldRejectBatchWhoseSumOverflows() {
+    when(userRepository.findById(1)).thenReturn(Optional.of(UserDto.builder().id(1).voteNum(0).build()));
+
+    assertThrows(RequestNotValidException.class, () -> journaledVotes.appendAll(Arrays.asList(
+        Vote.builder().userId(1).rsEventId(1).voteNum(Integer.MAX_VALUE).build(),
+        Vote.builder().userId(1).rsEventId(1).voteNum(2).build())));
+  }
+
+  @Test
+  void shouldStartJournalOverWhenCheckpointIsMissing(@TempDir Path dir) throws IOException {
+    try (VoteJournal journal = VoteJournal.open(dir, 2, false, 0)) {
+      for (int i = 0; i < 5; i++) {
+        journal.append(1, 1, 1, 1L);
+      }
+      journal.release(4);
+    }
+    JournaledVotes reopened = new JournaledVotes(userRepository, rsEventRepository, voteRepository,
+        checkpointRepository, transactionTemplate, new Leaderboard(), changeLog, true, dir.toString(), 2, 10, false, 100);
+
+    reopened.open();
+    reopened.close();
+
+    verify(checkpointRepository).save(VoteJournalCheckpointDto.builder().id(VoteJournalCheckpointDto.ID).position(0L).build());
+    try (VoteJournal journal = VoteJournal.open(dir, 2, false, 0)) {
+      assertEquals(journal.start(), 0);
+      assertEquals(journal.end(), 0);
+    }
+  }
+
+  @Test
+  void shouldDropBudgetsOfIdleUsersOnceOverBound(@TempDir Path dir) throws IOException {
+    JournaledVotes bounded = openJournal(dir, 1);
+    when(userRepository.findById(1)).thenReturn(Optional.of(UserDto.builder().id(1).voteNum(10).build()));
+    when(userRepository.findById(2)).thenReturn(Optional.of(UserDto.builder().id(2).voteNum(10).build()));
+
+    bounded.append(Vote.builder().userId(1).voteNum(2).build(), 1);
+    bounded.append(Vote.builder().userId(2).voteNum(3).build(), 1);
+    assertEquals(bounded.budgetCount(), 2);
+    bounded.apply();
+    assertEquals(bounded.budgetCount(), 0);
+
+    bounded.append(Vote.builder().userId(1).voteNum(1).build(), 1);
+    verify(userRepository, times(2)).findById(1);
+    bounded.close();
+  }
+
+  @Test
+  void shouldReadUserRowAgainWhenBatchIsAppliedWhileLoadingBudget(@TempDir Path dir) throws IOException {
+    JournaledVotes journal = openJournal(dir, 100);
+    when(userRepository.findById(1)).thenReturn(Optional.of(UserDto.builder().id(1).voteNum(10).build()));
+    journal.append(Vote.builder().userId(1).voteNum(2).build(), 1);
+    journal.forgetBudget(1);
+    // the row is read while the vote is still in the journal, then the vote is applied
+    when(userRepository.findById(1))
+        .thenAnswer(invocation -> {
+          journal.apply();
+          return Optional.of(UserDto.builder().id(1).voteNum(10).build());
+        })
+        .thenReturn(Optional.of(UserDto.builder().id(1).voteNum(8).build()));
+
+    journal.append(Vote.builder().userId(1).voteNum(8).build(), 1);
+    assertThrows(RuntimeException.class, () -> journal.append(Vote.builder().userId(1).voteNum(1).build(), 1));
+    journal.close();
+  }
+
+  private JournaledVotes openJournal(Path dir, int maxBudgets) throws IOException {
+    Leaderboard leaderboard = new Leaderboard();
+    leaderboard.put(Leaderboard.Entry.builder().id(1).eventName("first").keyword("keyword").voteNum(0).build());
+    when(transactionTemplate.execute(any()))
+        .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    when(rsEventRepository.findIdsByIdIn(any())).thenReturn(Collections.singletonList(1));
+    when(userRepository.decreaseVoteNum(anyInt(), anyInt())).thenReturn(1);
+    JournaledVotes opened = new JournaledVotes(userRepository, rsEventRepository, voteRepository,
+        checkpointRepository, transactionTemplate, leaderboard, changeLog, true, dir.toString(), 16, 10, false, maxBudgets);
+    opened.open();
+    return opened;
+  }
+}
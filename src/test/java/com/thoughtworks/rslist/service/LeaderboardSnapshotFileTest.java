@@ -0,0 +1,50 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LeaderboardSnapshotFileTest {
+  @TempDir
+  Path dir;
+
+  @Test
+  void shouldReadBackWhatWasWritten() throws IOException {
+    Leaderboard leaderboard = new Leaderboard();
+    leaderboard.put(Leaderboard.Entry.builder().id(1).eventName("event 1").keyword("keyword").voteNum(5).build());
+    leaderboard.put(Leaderboard.Entry.builder().id(2).eventName("event 2").voteNum(9).build());
+    RsEventRepository rsEventRepository = mock(RsEventRepository.class);
+    LocalDateTime highWaterMark = LocalDateTime.of(2020, 9, 1, 10, 0, 0, 123_000_000);
+    when(rsEventRepository.findLastModifiedAt()).thenReturn(highWaterMark);
+    LeaderboardSnapshotFile snapshotFile =
+        new LeaderboardSnapshotFile(leaderboard, rsEventRepository, true, dir.resolve("leaderboard.snapshot").toString());
+
+    snapshotFile.write();
+    LeaderboardSnapshotFile.Snapshot snapshot = snapshotFile.read().get();
+
+    assertEquals(snapshot.getHighWaterMark(), highWaterMark);
+    assertEquals(snapshot.getEntries(), leaderboard.all());
+  }
+
+  @Test
+  void shouldIgnoreMissingOrForeignFile() throws IOException {
+    Path path = dir.resolve("leaderboard.snapshot");
+    LeaderboardSnapshotFile snapshotFile =
+        new LeaderboardSnapshotFile(new Leaderboard(), mock(RsEventRepository.class), true, path.toString());
+    assertTrue(!snapshotFile.read().isPresent());
+
+    Files.write(path, new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+
+    assertTrue(!snapshotFile.read().isPresent());
+  }
+}
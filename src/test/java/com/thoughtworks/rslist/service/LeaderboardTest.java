@@ -0,0 +1,127 @@
+package com.thoughtworks.rslist.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LeaderboardTest {
+  Leaderboard leaderboard;
+
+  @BeforeEach
+  void setUp() {
+    leaderboard = new Leaderboard();
+    leaderboard.put(entry(1, 5));
+    leaderboard.put(entry(2, 9));
+    leaderboard.put(entry(3, 1));
+    leaderboard.put(entry(4, 7));
+  }
+
+  @Test
+  void shouldOrderByVoteNumAndThenById() {
+    leaderboard.put(entry(5, 7));
+
+    assertEquals(ids(leaderboard.all()), ids(2, 4, 5, 1, 3));
+  }
+
+  @Test
+  void shouldPlacePurchasedRankingOverVoteOrder() {
+    leaderboard.setSlot(1, 3);
+
+    assertEquals(ids(leaderboard.all()), ids(3, 2, 4, 1));
+    assertEquals(ids(leaderboard.window(2, 3)), ids(2, 4));
+  }
+
+  @Test
+  void shouldPutPurchasedRankingBeyondListAfterUnpurchasedEvents() {
+    leaderboard.setSlot(5, 2);
+    assertEquals(ids(leaderboard.all()), ids(4, 1, 3, 2));
+    assertEquals(ids(leaderboard.window(3, 4)), ids(3, 2));
+
+    leaderboard.put(entry(6, 0));
+    assertEquals(ids(leaderboard.all()), ids(4, 1, 3, 6, 2));
+  }
+
+  @Test
+  void shouldRemoveEventsAndTheirSlotsTogether() {
+    leaderboard.setSlot(1, 3);
+    long version = leaderboard.version();
+
+    leaderboard.removeAll(Arrays.asList(3, 4, 9));
+
+    assertEquals(ids(leaderboard.all()), ids(2, 1));
+    assertEquals(leaderboard.ownerOf(1), Optional.empty());
+    assertEquals(leaderboard.version(), version + 1);
+  }
+
+  @Test
+  void shouldGetSamePositionAsWindow() {
+    leaderboard.put(entry(5, 3));
+    leaderboard.setSlot(2, 3);
+    leaderboard.setSlot(7, 1);
+
+    List<Leaderboard.Entry> all = leaderboard.all();
+    for (int position = 1; position <= all.size(); position++) {
+      assertEquals(leaderboard.get(position).get(), all.get(position - 1));
+    }
+    assertEquals(ids(all), ids(2, 3, 4, 5, 1));
+    assertTrue(!leaderboard.get(0).isPresent());
+    assertTrue(!leaderboard.get(6).isPresent());
+  }
+
+  @Test
+  void shouldFindPositionOfEveryEvent() {
+    leaderboard.put(entry(5, 3));
+    leaderboard.put(entry(6, 2));
+    leaderboard.setSlot(3, 3);
+    leaderboard.setSlot(6, 4);
+    leaderboard.setSlot(9, 1);
+
+    List<Leaderboard.Entry> all = leaderboard.all();
+    for (int position = 1; position <= all.size(); position++) {
+      assertEquals(leaderboard.position(all.get(position - 1).getId()).get(), Integer.valueOf(position));
+    }
+    assertTrue(!leaderboard.position(7).isPresent());
+  }
+
+  @Test
+  void shouldMoveEventWhenVotesChange() {
+    leaderboard.addVotes(3, 10);
+
+    assertEquals(ids(leaderboard.window(1, 2)), ids(3, 2));
+  }
+
+  @Test
+  void shouldReturnEmptyWindowOutsideList() {
+    assertTrue(leaderboard.window(5, 6).isEmpty());
+    assertTrue(new Leaderboard().window(1, 1).isEmpty());
+  }
+
+  @Test
+  void shouldReleaseSlotOfRemovedEvent() {
+    leaderboard.reload(Collections.singletonList(entry(1, 0)), Collections.singletonMap(1, 1));
+    leaderboard.remove(1);
+
+    assertEquals(leaderboard.size(), 0);
+    assertTrue(!leaderboard.ownerOf(1).isPresent());
+  }
+
+  private static Leaderboard.Entry entry(int id, int voteNum) {
+    return Leaderboard.Entry.builder().id(id).eventName("event " + id).keyword("keyword").voteNum(voteNum).build();
+  }
+
+  private static List<Integer> ids(List<Leaderboard.Entry> entries) {
+    return entries.stream().map(Leaderboard.Entry::getId).collect(Collectors.toList());
+  }
+
+  private static List<Integer> ids(Integer... ids) {
+    return Arrays.asList(ids);
+  }
+}
@@ -0,0 +1,151 @@
+package com.thoughtworks.rslist.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class RankingStreamTest {
+  Leaderboard leaderboard;
+  RankingStream rankingStream;
+
+  @BeforeEach
+  void setUp() {
+    leaderboard = new Leaderboard();
+    leaderboard.put(entry(1, 5));
+    leaderboard.put(entry(2, 9));
+    rankingStream = new RankingStream(leaderboard, 2, 1000, 1, 1, 1000);
+  }
+
+  @Test
+  void shouldStartWithResetAndThenCoalesceChangesPerEvent() {
+    RankingStream.Subscriber subscriber = new RankingStream.Subscriber(null, 2);
+    assertNull(subscriber.drain());
+
+    subscriber.changed(1);
+    subscriber.changed(1);
+    subscriber.changed(2);
+
+    assertEquals(subscriber.drain(), new LinkedHashSet<>(Arrays.asList(1, 2)));
+    assertTrue(subscriber.drain().isEmpty());
+  }
+
+  @Test
+  void shouldAskSlowSubscriberToReloadWhenBufferOverflows() {
+    RankingStream.Subscriber subscriber = new RankingStream.Subscriber(null, 2);
+    subscriber.drain();
+
+    subscriber.changed(1);
+    subscriber.changed(2);
+    subscriber.changed(3);
+
+    assertNull(subscriber.drain());
+  }
+
+  @Test
+  void shouldDescribeLatestStateOfChangedEvents() {
+    leaderboard.addVotes(1, 10);
+    leaderboard.remove(2);
+
+    List<RankingStream.Delta> deltas = rankingStream.deltas(new LinkedHashSet<>(Arrays.asList(1, 2)));
+
+    assertEquals(deltas.get(0), RankingStream.Delta.builder().id(1).eventName("event 1").keyword("keyword")
+        .voteNum(15).position(1).build());
+    assertEquals(deltas.get(1), RankingStream.Delta.builder().id(2).removed(true).build());
+  }
+
+  @Test
+  void shouldTrackSubscribersOfLeaderboard() {
+    rankingStream.start();
+    rankingStream.subscribe();
+
+    assertEquals(rankingStream.subscriberCount(), 1);
+    leaderboard.reload(Collections.singletonList(entry(1, 0)), Collections.emptyMap());
+    rankingStream.stop();
+    assertEquals(rankingStream.subscriberCount(), 0);
+  }
+
+  @Test
+  void shouldNotWaitForSubscriberThatIsStillBeingWrittenTo() throws Exception {
+    CountDownLatch blocked = new CountDownLatch(1);
+    SseEmitter emitter = mock(SseEmitter.class);
+    doAnswer(invocation -> {
+      blocked.await();
+      return null;
+    }).when(emitter).send(any(SseEmitter.SseEventBuilder.class));
+    rankingStream.subscribe(emitter);
+
+    assertTimeoutPreemptively(Duration.ofSeconds(1), () -> {
+      rankingStream.send();
+      verify(emitter, timeout(1000)).send(any(SseEmitter.SseEventBuilder.class));
+      rankingStream.changed(1);
+      rankingStream.send();
+    });
+    blocked.countDown();
+
+    verify(emitter, times(1)).send(any(SseEmitter.SseEventBuilder.class));
+  }
+
+  @Test
+  void shouldDropSubscriberWhoseSendOutlastsTimeout() throws Exception {
+    CountDownLatch blocked = new CountDownLatch(1);
+    SseEmitter emitter = blockingEmitter(blocked);
+    rankingStream.subscribe(emitter);
+
+    rankingStream.send(0);
+    verify(emitter, timeout(1000)).send(any(SseEmitter.SseEventBuilder.class));
+    rankingStream.send(500);
+    assertEquals(rankingStream.subscriberCount(), 1);
+    rankingStream.send(1001);
+    assertEquals(rankingStream.subscriberCount(), 0);
+
+    blocked.countDown();
+    verify(emitter, timeout(1000)).complete();
+  }
+
+  @Test
+  void shouldResetSubscriberThatFindsSendQueueFull() throws Exception {
+    CountDownLatch blocked = new CountDownLatch(1);
+    rankingStream.subscribe(blockingEmitter(blocked));
+    rankingStream.subscribe(blockingEmitter(blocked));
+    RankingStream.Subscriber rejected = rankingStream.subscribe(mock(SseEmitter.class));
+    rejected.drain();
+
+    // one sender busy with the first subscriber, the second one queued, no room for the third
+    rankingStream.send(0);
+    blocked.countDown();
+
+    assertNull(rejected.drain());
+  }
+
+  private static SseEmitter blockingEmitter(CountDownLatch blocked) throws IOException {
+    SseEmitter emitter = mock(SseEmitter.class);
+    doAnswer(invocation -> {
+      blocked.await();
+      return null;
+    }).when(emitter).send(any(SseEmitter.SseEventBuilder.class));
+    return emitter;
+  }
+
+  private static Leaderboard.Entry entry(int id, int voteNum) {
+    return Leaderboard.Entry.builder().id(id).eventName("event " + id).keyword("keyword").voteNum(voteNum).build();
+  }
+}
@@ -0,0 +1,111 @@
+package com.thoughtworks.rslist.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thoughtworks.rslist.domain.RsEvent;
+import com.thoughtworks.rslist.exception.RequestNotValidException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RsListSnapshotTest {
+  ObjectMapper objectMapper = new ObjectMapper();
+  Leaderboard leaderboard;
+  RsService rsService;
+  RsListSnapshot rsListSnapshot;
+
+  @BeforeEach
+  void setUp() {
+    leaderboard = new Leaderboard();
+    leaderboard.put(entry(1, 5));
+    leaderboard.put(entry(2, 9));
+    leaderboard.put(entry(3, 1));
+    rsService = mock(RsService.class);
+    when(rsService.getRsEventList()).thenAnswer(invocation -> rsEvents(leaderboard.all()));
+    when(rsService.getRsEventListBetween(anyInt(), anyInt())).thenAnswer(invocation -> rsEvents(
+        leaderboard.window(invocation.getArgument(0), invocation.getArgument(1))));
+    rsListSnapshot = new RsListSnapshot(rsService, leaderboard, leaderboard, objectMapper, true);
+  }
+
+  @Test
+  void shouldEncodeSameJsonAsJackson() throws IOException {
+    List<RsEvent> rsEvents = rsEvents(leaderboard.all());
+
+    assertArrayEquals(rsListSnapshot.list(), objectMapper.writeValueAsBytes(rsEvents));
+    assertArrayEquals(rsListSnapshot.range(2, 3), objectMapper.writeValueAsBytes(rsEvents.subList(1, 3)));
+    assertArrayEquals(rsListSnapshot.range(1, 1), objectMapper.writeValueAsBytes(rsEvents.subList(0, 1)));
+    assertArrayEquals(rsListSnapshot.get(3), objectMapper.writeValueAsBytes(rsEvents.get(2)));
+    assertArrayEquals(gunzip(rsListSnapshot.gzippedList()), rsListSnapshot.list());
+  }
+
+  @Test
+  void shouldRebuildOnlyWhenLeaderboardChanges() throws IOException {
+    byte[] first = rsListSnapshot.list();
+    assertSame(rsListSnapshot.list(), first);
+    verify(rsService, times(1)).getRsEventList();
+
+    leaderboard.addVotes(3, 10);
+
+    assertArrayEquals(rsListSnapshot.list(), objectMapper.writeValueAsBytes(rsEvents(leaderboard.all())));
+    verify(rsService, times(2)).getRsEventList();
+  }
+
+  @Test
+  void shouldServeStaleRangeFromLeaderboardAndRebuildInBackground() throws IOException {
+    rsListSnapshot.list();
+    leaderboard.addVotes(3, 10);
+
+    assertArrayEquals(rsListSnapshot.range(1, 2),
+        objectMapper.writeValueAsBytes(rsEvents(leaderboard.all()).subList(0, 2)));
+    verify(rsService).getRsEventListBetween(1, 2);
+    verify(rsService, timeout(1000).times(2)).getRsEventList();
+  }
+
+  @Test
+  void shouldRejectInvalidRange() {
+    rsListSnapshot.list();
+
+    assertThrows(RequestNotValidException.class, () -> rsListSnapshot.range(0, 2));
+    assertThrows(RequestNotValidException.class, () -> rsListSnapshot.range(2, 1));
+    assertThrows(RequestNotValidException.class, () -> rsListSnapshot.range(1, 4));
+    assertThrows(RequestNotValidException.class, () -> rsListSnapshot.get(4));
+  }
+
+  private static Leaderboard.Entry entry(int id, int voteNum) {
+    return Leaderboard.Entry.builder().id(id).eventName("event " + id).keyword("keyword").voteNum(voteNum).build();
+  }
+
+  private static List<RsEvent> rsEvents(List<Leaderboard.Entry> entries) {
+    return entries.stream()
+        .map(e -> RsEvent.builder().eventName(e.getEventName()).keyword(e.getKeyword()).userId(e.getId())
+            .voteNum(e.getVoteNum()).build())
+        .collect(Collectors.toList());
+  }
+
+  private static byte[] gunzip(byte[] gzipped) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+      byte[] buffer = new byte[4096];
+      for (int n = in.read(buffer); n > 0; n = in.read(buffer)) {
+        out.write(buffer, 0, n);
+      }
+    }
+    return out.toByteArray();
+  }
+}
@@ -1,24 +1,40 @@
 package com.thoughtworks.rslist.service;
 
 import com.thoughtworks.rslist.domain.Trade;
+import com.thoughtworks.rslist.domain.TradeOutcome;
 import com.thoughtworks.rslist.domain.Vote;
 import com.thoughtworks.rslist.dto.RsEventDto;
 import com.thoughtworks.rslist.dto.TradeDto;
 import com.thoughtworks.rslist.dto.UserDto;
 import com.thoughtworks.rslist.dto.VoteDto;
+import com.thoughtworks.rslist.exception.RequestNotValidException;
 import com.thoughtworks.rslist.repository.RsEventRepository;
 import com.thoughtworks.rslist.repository.TradeRepository;
 import com.thoughtworks.rslist.repository.UserRepository;
 import com.thoughtworks.rslist.repository.VoteRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.mockito.Mock;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.Collections;
 import java.util.Optional;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
@@ -34,13 +50,30 @@ class RsServiceTest {
     VoteRepository voteRepository;
     @Mock
     TradeRepository tradeRepository;
+    @Mock
+    VoteWriteBehind voteWriteBehind;
+    @Mock
+    JournaledVotes journaledVotes;
+    @Mock
+    TradeLedger tradeLedger;
+    @Mock
+    ChangeLog changeLog;
+    @Mock
+    PlatformTransactionManager transactionManager;
+    RankingSlotTable rankingSlotTable;
+    MeterRegistry meterRegistry;
     LocalDateTime localDateTime;
     Vote vote;
 
     @BeforeEach
     void setUp() {
         initMocks(this);
-        rsService = new RsService(rsEventRepository, userRepository, voteRepository, tradeRepository);
+        Leaderboard leaderboard = new Leaderboard();
+        rankingSlotTable = new RankingSlotTable();
+        meterRegistry = new SimpleMeterRegistry();
+        rsService = new RsService(rsEventRepository, userRepository, voteRepository, tradeRepository, leaderboard,
+                leaderboard, voteWriteBehind, new TransactionTemplate(transactionManager),
+                rankingSlotTable, journaledVotes, meterRegistry, tradeLedger, changeLog);
         localDateTime = LocalDateTime.now();
         vote = Vote.builder().voteNum(2).rsEventId(1).time(localDateTime).userId(1).build();
     }
@@ -68,8 +101,10 @@ class RsServiceTest {
                         .user(userDto)
                         .build();
 
-        when(rsEventRepository.findById(anyInt())).thenReturn(Optional.of(rsEventDto));
-        when(userRepository.findById(anyInt())).thenReturn(Optional.of(userDto));
+        when(userRepository.decreaseVoteNum(1, 2)).thenReturn(1);
+        when(rsEventRepository.increaseVoteNum(1, 2)).thenReturn(1);
+        when(rsEventRepository.getOne(1)).thenReturn(rsEventDto);
+        when(userRepository.getOne(1)).thenReturn(userDto);
         // when
         rsService.vote(vote, 1);
         // then
@@ -81,8 +116,29 @@ class RsServiceTest {
                                 .user(userDto)
                                 .rsEvent(rsEventDto)
                                 .build());
-        verify(userRepository).save(userDto);
-        verify(rsEventRepository).save(rsEventDto);
+        verify(userRepository).decreaseVoteNum(1, 2);
+        verify(rsEventRepository).increaseVoteNum(1, 2);
+        verify(changeLog).recordVotes(Collections.singletonMap(1, 2), Collections.singleton(1));
+    }
+
+    @Test
+    void shouldOnlyJournalVoteWhenJournalIsEnabled() {
+        when(journaledVotes.isEnabled()).thenReturn(true);
+
+        rsService.vote(vote, 1);
+
+        verify(journaledVotes).append(vote, 1);
+        verify(userRepository, never()).decreaseVoteNum(anyInt(), anyInt());
+        verify(voteRepository, never()).save(any());
+    }
+
+    @Test
+    void shouldThrowExceptionWhenVoteNumExceedsBudget() {
+        when(userRepository.decreaseVoteNum(anyInt(), anyInt())).thenReturn(0);
+
+        assertThrows(RuntimeException.class, () -> rsService.vote(vote, 1));
+        verify(rsEventRepository, never()).increaseVoteNum(anyInt(), anyInt());
+        verify(voteRepository, never()).save(any());
     }
 
     @Test
@@ -148,21 +204,96 @@ class RsServiceTest {
   public void when_buy_rs_and_ranking_bought_and_amount_sufficient_then_update_old_trade() {
     UserDto userDto = UserDto.builder().voteNum(5).phone("18888888888").gender("female")
         .email("a@b.com").age(19).userName("xiaoli").id(2).build();
+    RsEventDto rsEventDtoOld = RsEventDto.builder().eventName("old event").id(2)
+        .keyword("keyword").voteNum(2).user(userDto).build();
     RsEventDto rsEventDto = RsEventDto.builder().eventName("event name").id(1)
         .keyword("keyword").voteNum(2).user(userDto).build();
-    TradeDto tradeDtoOld = TradeDto.builder().amount(200).ranking(1)
-        .rs_event_dto(rsEventDto).build();
+    TradeDto tradeDtoOld = TradeDto.builder().id(3).version(4).amount(200).ranking(1)
+        .rs_event_dto(rsEventDtoOld).build();
     when(rsEventRepository.findById(anyInt())).thenReturn(Optional.of(rsEventDto));
     when(tradeRepository.findTradeDtoByRanking(anyInt())).thenReturn(Optional.of(tradeDtoOld));
+    when(tradeRepository.replaceOwner(3, 4, 300, rsEventDto)).thenReturn(1);
 
     Trade tradeNew = Trade.builder().amount(300).ranking(1).build();
-    TradeDto tradeDtoNew = TradeDto.builder()
-        .amount(tradeNew.getAmount()).ranking(tradeNew.getRanking())
-        .rs_event_dto(rsEventDto).build();
     rsService.buy(tradeNew, rsEventDto.getId());
 
-    verify(rsEventRepository).delete(tradeDtoOld.getRs_event_dto());
-    verify(rsEventRepository).save(tradeDtoNew.getRs_event_dto());
-    verify(tradeRepository).save(tradeDtoNew);
+    verify(rsEventRepository).delete(rsEventDtoOld);
+    verify(rsEventRepository).updateRanking(1, 1);
+    verify(tradeRepository, never()).save(any());
+  }
+
+  @Test
+  public void when_buy_rs_and_ranking_keeps_changing_then_give_up_after_bounded_retries() {
+    UserDto userDto = UserDto.builder().voteNum(5).phone("18888888888").gender("female")
+        .email("a@b.com").age(19).userName("xiaoli").id(2).build();
+    RsEventDto rsEventDto = RsEventDto.builder().eventName("event name").id(1)
+        .keyword("keyword").voteNum(2).user(userDto).build();
+    TradeDto tradeDtoOld = TradeDto.builder().id(3).amount(200).ranking(1)
+        .rs_event_dto(RsEventDto.builder().id(2).build()).build();
+    when(rsEventRepository.findById(anyInt())).thenReturn(Optional.of(rsEventDto));
+    when(tradeRepository.findTradeDtoByRanking(anyInt())).thenReturn(Optional.of(tradeDtoOld));
+    when(tradeRepository.replaceOwner(anyInt(), anyLong(), anyDouble(), any())).thenReturn(0);
+
+    Trade tradeNew = Trade.builder().amount(300).ranking(1).build();
+    assertThrows(RequestNotValidException.class, () -> rsService.buy(tradeNew, rsEventDto.getId()));
+    verify(tradeRepository, times(RsService.BUY_ATTEMPTS)).replaceOwner(anyInt(), anyLong(), anyDouble(), any());
+    verify(rsEventRepository, never()).delete(any());
+  }
+
+  @Test
+  public void when_buy_rs_and_slot_table_knows_higher_price_then_reject_without_reading_trades() {
+    rankingSlotTable.put(1, 200, 2);
+
+    Trade trade = Trade.builder().amount(200).ranking(1).build();
+    assertThrows(RequestNotValidException.class, () -> rsService.buy(trade, 1));
+    verify(tradeRepository, never()).findTradeDtoByRanking(anyInt());
+    verify(rsEventRepository, never()).findById(anyInt());
+  }
+
+  @Test
+  public void when_buy_rs_is_rejected_then_count_rejection_by_reason() {
+    rankingSlotTable.put(1, 200, 2);
+
+    assertThrows(RequestNotValidException.class, () -> rsService.buy(Trade.builder().amount(200).ranking(1).build(), 1));
+    assertThrows(RequestNotValidException.class, () -> rsService.buy(Trade.builder().amount(100).ranking(0).build(), 1));
+
+    assertEquals(1, meterRegistry.counter(RsService.BUY_REJECTIONS, "reason", "outbid").count());
+    assertEquals(1, meterRegistry.counter(RsService.BUY_REJECTIONS, "reason", "invalid").count());
+    verify(tradeLedger).record(any(), anyInt(), eq(TradeOutcome.OUTBID));
+    verify(tradeLedger).record(any(), anyInt(), eq(TradeOutcome.INVALID));
+  }
+
+  @Test
+  public void when_buy_rs_above_max_ranking_then_check_price_in_trade_table() {
+    RsEventDto rsEventDto = RsEventDto.builder().eventName("event name").id(1).keyword("keyword").build();
+    TradeDto tradeDtoOld = TradeDto.builder().id(3).amount(200).ranking(Integer.MAX_VALUE).rs_event_dto(rsEventDto).build();
+    when(rsEventRepository.findById(1)).thenReturn(Optional.of(rsEventDto));
+    when(tradeRepository.findTradeDtoByRanking(Integer.MAX_VALUE)).thenReturn(Optional.of(tradeDtoOld));
+    rankingSlotTable.put(Integer.MAX_VALUE, 200, 1);
+
+    assertThrows(RequestNotValidException.class,
+        () -> rsService.buy(Trade.builder().amount(100).ranking(Integer.MAX_VALUE).build(), 1));
+
+    assertEquals(rankingSlotTable.get(Integer.MAX_VALUE), null);
+    verify(tradeRepository).findTradeDtoByRanking(Integer.MAX_VALUE);
+    verify(tradeLedger).record(any(), anyInt(), eq(TradeOutcome.OUTBID));
+  }
+
+  @Test
+  public void when_buy_rs_then_record_outcome_after_transaction_ends() {
+    RsEventDto rsEventDto = RsEventDto.builder().eventName("event name").id(1).keyword("keyword").build();
+    TradeDto tradeDtoOld = TradeDto.builder().id(3).amount(200).ranking(1).rs_event_dto(rsEventDto).build();
+    when(rsEventRepository.findById(1)).thenReturn(Optional.of(rsEventDto));
+    when(tradeRepository.findTradeDtoByRanking(1)).thenReturn(Optional.of(tradeDtoOld));
+
+    assertThrows(RequestNotValidException.class,
+        () -> rsService.buy(Trade.builder().amount(100).ranking(1).build(), 1));
+    assertThrows(RuntimeException.class, () -> rsService.buy(Trade.builder().amount(300).ranking(1).build(), 2));
+
+    InOrder inOrder = inOrder(transactionManager, tradeLedger);
+    inOrder.verify(transactionManager).commit(any());
+    inOrder.verify(tradeLedger).record(any(), eq(1), eq(TradeOutcome.OUTBID));
+    inOrder.verify(transactionManager).commit(any());
+    inOrder.verify(tradeLedger).record(any(), eq(2), eq(TradeOutcome.UNKNOWN_EVENT));
   }
 }
@@ -0,0 +1,79 @@
+package com.thoughtworks.rslist.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class VoteJournalTest {
+  @TempDir
+  Path dir;
+
+  @Test
+  void shouldReadAppendedVotesAcrossSegments() throws IOException {
+    try (VoteJournal journal = VoteJournal.open(dir, 2, false, 0)) {
+      for (int i = 1; i <= 5; i++) {
+        assertEquals(journal.append(i, 10 + i, i, 1000L * i), i - 1);
+      }
+
+      List<VoteJournal.Record> records = journal.read(1, 3);
+
+      assertEquals(records.size(), 3);
+      assertEquals(records.get(0), new VoteJournal.Record(1, 2, 12, 2, 2000L));
+      assertEquals(records.get(2), new VoteJournal.Record(3, 4, 14, 4, 4000L));
+      assertEquals(journal.read(4, 10).size(), 1);
+      assertEquals(segments().size(), 3);
+    }
+  }
+
+  @Test
+  void shouldContinueAfterLastCompleteRecordOnReopen() throws IOException {
+    try (VoteJournal journal = VoteJournal.open(dir, 4, false, 0)) {
+      journal.append(1, 1, 1, 1L);
+      journal.append(2, 1, 1, 1L);
+      journal.append(3, 1, 1, 1L);
+    }
+    // a record torn by a crash: its payload changed after the crc was written
+    try (RandomAccessFile file = new RandomAccessFile(segments().get(0).toFile(), "rw")) {
+      file.seek(2 * VoteJournal.RECORD_SIZE + 4);
+      file.writeInt(99);
+    }
+
+    try (VoteJournal journal = VoteJournal.open(dir, 4, false, 0)) {
+      assertEquals(journal.end(), 2);
+      assertEquals(journal.append(4, 1, 1, 1L), 2);
+      assertEquals(journal.read(0, 10).stream().map(VoteJournal.Record::getUserId).collect(Collectors.toList()),
+          Arrays.asList(1, 2, 4));
+    }
+  }
+
+  @Test
+  void shouldStartEmptyJournalAtCheckpointAndReleaseAppliedSegments() throws IOException {
+    try (VoteJournal journal = VoteJournal.open(dir, 2, false, 7)) {
+      for (int i = 1; i <= 5; i++) {
+        journal.append(i, 1, 1, 1L);
+      }
+
+      journal.release(11);
+
+      assertEquals(journal.start(), 11);
+      assertEquals(journal.end(), 12);
+      assertEquals(segments().size(), 1);
+    }
+  }
+
+  private List<Path> segments() throws IOException {
+    try (Stream<Path> files = Files.list(dir)) {
+      return files.sorted().collect(Collectors.toList());
+    }
+  }
+}
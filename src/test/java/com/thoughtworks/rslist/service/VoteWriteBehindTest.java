@@ -0,0 +1,82 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+class VoteWriteBehindTest {
+  @Mock RsEventRepository rsEventRepository;
+  @Mock PlatformTransactionManager transactionManager;
+  VoteWriteBehind voteWriteBehind;
+
+  @BeforeEach
+  void setUp() {
+    initMocks(this);
+    voteWriteBehind = new VoteWriteBehind(rsEventRepository, new TransactionTemplate(transactionManager),
+        true, 16, 10, false);
+  }
+
+  @Test
+  void shouldFlushPastMaxPendingInItsOwnTransaction() {
+    voteWriteBehind.add(1, 4);
+    voteWriteBehind.add(1, 6);
+
+    ArgumentCaptor<TransactionDefinition> definition = ArgumentCaptor.forClass(TransactionDefinition.class);
+    verify(transactionManager).getTransaction(definition.capture());
+    assertEquals(definition.getValue().getPropagationBehavior(), TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    verify(rsEventRepository).increaseVoteNum(1, 10);
+    assertEquals(voteWriteBehind.pending(1), 0);
+  }
+
+  @Test
+  void shouldWriteBacklogLargerThanIntInParts() {
+    VoteWriteBehind unbounded = new VoteWriteBehind(rsEventRepository, new TransactionTemplate(transactionManager),
+        true, 16, Long.MAX_VALUE, false);
+    unbounded.add(1, Integer.MAX_VALUE);
+    unbounded.add(1, 10);
+
+    unbounded.flush();
+
+    verify(rsEventRepository).increaseVoteNum(1, Integer.MAX_VALUE);
+    verify(rsEventRepository).increaseVoteNum(1, 10);
+  }
+
+  @Test
+  void shouldKeepOnlyVotesOfEventsThatFailedToFlush() {
+    when(rsEventRepository.increaseVoteNum(2, 4)).thenThrow(new IllegalStateException());
+    voteWriteBehind.add(1, 3);
+    voteWriteBehind.add(2, 4);
+
+    voteWriteBehind.flush();
+
+    verify(rsEventRepository, times(2)).increaseVoteNum(1, 3);
+    assertEquals(voteWriteBehind.pending(1), 0);
+    assertEquals(voteWriteBehind.pending(2), 4);
+  }
+
+  @Test
+  void shouldDropCounterOfEventWithoutVotesSinceLastFlush() {
+    voteWriteBehind.add(1, 2);
+    voteWriteBehind.flush();
+    assertEquals(voteWriteBehind.counterCount(), 1);
+
+    voteWriteBehind.flush();
+    assertEquals(voteWriteBehind.counterCount(), 0);
+
+    voteWriteBehind.add(1, 3);
+    voteWriteBehind.flush();
+    verify(rsEventRepository).increaseVoteNum(1, 2);
+    verify(rsEventRepository).increaseVoteNum(1, 3);
+  }
+}